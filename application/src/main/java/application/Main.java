@@ -2,16 +2,22 @@ package application;
 
 import application.interceptors.AuthInterceptor;
 import application.interceptors.LoggingInterceptor;
+import application.persistence.WriteAheadLog;
+import application.persistence.WriteAheadLogConfig;
 import middleware.Middleware;
 import middleware.util.Log;
 
 import application.services.MessageFormatter;
 import application.services.MessageStore;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 public class Main {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         int port = 8080;
+        Path dataDir = Path.of(System.getProperty("messagestore.dataDir", "data/messagestore"));
 
         Log.info("Main", "Iniciando a plataforma de Middleware...");
         Middleware middleware = new Middleware(port);
@@ -19,7 +25,15 @@ public class Main {
         middleware.addInterceptor(new AuthInterceptor());
 
         Log.info("Main", "Criando instâncias dos serviços...");
-        MessageStore store = new MessageStore(10);
+        WriteAheadLog wal = WriteAheadLog.open(new WriteAheadLogConfig(dataDir));
+        MessageStore store = new MessageStore(10, wal);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                Log.error("Main", "Erro ao fechar o write-ahead log: " + e.getMessage(), e);
+            }
+        }));
         MessageFormatter formatter = new MessageFormatter(store);
 
         Log.info("Main", "Registando MessageStore em /messagestore ...");
@@ -0,0 +1,21 @@
+package application.dto;
+
+import java.util.List;
+
+import application.entity.Mensagem;
+
+public class MessagesSinceDTO {
+    private final List<Mensagem> messages;
+    private final long cursor;        // a enviar no pedido seguinte
+    private final boolean truncated;  // houve mensagens depois do cursor que já saíram do log
+
+    public MessagesSinceDTO(List<Mensagem> messages, long cursor, boolean truncated) {
+        this.messages = messages;
+        this.cursor = cursor;
+        this.truncated = truncated;
+    }
+
+    public List<Mensagem> getMessages() { return messages; }
+    public long getCursor() { return cursor; }
+    public boolean isTruncated() { return truncated; }
+}
@@ -0,0 +1,14 @@
+package application.dto;
+
+public class MessagesSinceRequestDTO {
+    private String groupId;
+    private long cursor = -1;   // sequência da última mensagem já recebida; -1 para começar do início
+    private long timeoutMs;     // tempo máximo à espera de mensagens novas; 0 responde logo
+
+    public String getGroupId() { return groupId; }
+    public void setGroupId(String groupId) { this.groupId = groupId; }
+    public long getCursor() { return cursor; }
+    public void setCursor(long cursor) { this.cursor = cursor; }
+    public long getTimeoutMs() { return timeoutMs; }
+    public void setTimeoutMs(long timeoutMs) { this.timeoutMs = timeoutMs; }
+}
@@ -1,19 +1,20 @@
 package application.entity;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Grupo {
     private String id;
     private String nome;
-    private Map<String, String> membros; // userId -> userName
+    // userId -> userName; lido a cada mensagem (isMembro) e alterado raramente
+    private volatile Map<String, String> membros;
 
     public Grupo(String id, String nome) {
         this.id = id;
         this.nome = nome;
-    this.membros = new HashMap<>();
+        this.membros = new ConcurrentHashMap<>();
     }
 
     public String getId() {
@@ -24,12 +25,20 @@ public class Grupo {
         return nome;
     }
 
+    /**
+     * Vista só de leitura dos ids dos membros, sem cópia: acompanha entradas e saídas posteriores.
+     */
     public Set<String> getMembros() {
-        return new HashSet<>(membros.keySet());
+        return Collections.unmodifiableSet(membros.keySet());
     }
 
+    // vista só de leitura userId -> userName
     public Map<String, String> getMembrosMap() {
-        return membros;
+        return Collections.unmodifiableMap(membros);
+    }
+
+    public boolean isMembro(String userId) {
+        return userId != null && membros.containsKey(userId);
     }
 
     public void setNome(String nome) {
@@ -41,15 +50,13 @@ public class Grupo {
     }
 
     public void setMembros(Map<String, String> membros) {
-        this.membros = membros;
+        this.membros = new ConcurrentHashMap<>(membros);
     }
 
     public boolean adicionarMembro(String userId, String userName) {
         if (userId == null || userId.trim().isEmpty()) return false;
         if (userName == null || userName.trim().isEmpty()) return false;
-        if (this.membros.containsKey(userId)) return false;
-        this.membros.put(userId, userName);
-        return true;
+        return this.membros.putIfAbsent(userId, userName) == null;
     }
 
     public boolean removerMembro(String userId) {
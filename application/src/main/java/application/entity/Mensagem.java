@@ -11,13 +11,19 @@ public class Mensagem {
     private final String groupId;
     private final String content;
     private final LocalDateTime timestamp;
+    private long sequence = -1; // posição no log do grupo, atribuída quando a mensagem é guardada
 
     public Mensagem(String id, String userId, String groupId, String content) {
+        this(id, userId, groupId, content, LocalDateTime.now());
+    }
+
+    // mensagem já existente, ex.: lida do disco
+    public Mensagem(String id, String userId, String groupId, String content, LocalDateTime timestamp) {
         this.id = id;
         this.userId = userId;
         this.groupId = groupId;
         this.content = content;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = timestamp;
     }
 
     public String getId() { return id; }
@@ -25,6 +31,8 @@ public class Mensagem {
     public String getGroupId() { return groupId; }
     public String getContent() { return content; }
     public LocalDateTime getTimestamp() { return timestamp; }
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
 
     public Instant getTimestampAsInstant() {
         return this.timestamp.toInstant(ZoneOffset.UTC);
@@ -1,8 +1,14 @@
 package application.interceptors;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import application.dto.AddMessageDTO;
 import application.services.MessageStore;
 import middleware.exceptions.AuthException;
+import middleware.exceptions.BadRequestException;
 import middleware.extension.InvocationContext;
 import middleware.extension.InvocationInterceptor;
 import middleware.util.Log;
@@ -10,6 +16,7 @@ import middleware.util.Log;
 /**
  * Interceptador que verifica se um usuário tem permissão para
  * enviar uma mensagem para um grupo (se ele é membro).
+ * Num lote (addMessages) cada par grupo/usuário é verificado uma só vez.
  */
 public class AuthInterceptor implements InvocationInterceptor {
 
@@ -17,22 +24,46 @@ public class AuthInterceptor implements InvocationInterceptor {
     public void beforeInvocation(InvocationContext context) throws Exception {
 
         String methodName = context.getAbsoluteObjectReference().getMethod().getName();
-        if (!methodName.equals("addMessage")) return;
+        if (!methodName.equals("addMessage") && !methodName.equals("addMessages")) return;
 
         Object target = context.getTargetObject();
         Object[] params = context.getMethodParameters();
 
-        if (!(target instanceof MessageStore) || !(params[0] instanceof AddMessageDTO)) {
+        if (!(target instanceof MessageStore store)) {
             Log.warn("AuthInterceptor", "Não foi possível aplicar. Tipos de objeto ou parâmetro inesperados.");
             return;
         }
 
-        MessageStore store = (MessageStore) target;
-        AddMessageDTO dto = (AddMessageDTO) params[0];
+        if (context.isBatch()) {
+            authorizeBatch(store, context.getBatch());
+            return;
+        }
+
+        if (!(params[0] instanceof AddMessageDTO dto)) {
+            Log.warn("AuthInterceptor", "Não foi possível aplicar. Tipos de objeto ou parâmetro inesperados.");
+            return;
+        }
+        authorize(store, dto.getGroupId(), dto.getUserId());
+    }
 
-        String userId = dto.getUserId();
-        String groupId = dto.getGroupId();
+    // o lote todo é recusado se algum autor não puder postar no grupo do seu item
+    private void authorizeBatch(MessageStore store, List<?> items) throws AuthException, BadRequestException {
+        Set<Map.Entry<String, String>> checked = new HashSet<>();
+        for (Object item : items) {
+            if (!(item instanceof AddMessageDTO dto)) {
+                throw new BadRequestException("Item inválido no lote de mensagens.");
+            }
+            if (dto.getUserId() == null || dto.getGroupId() == null) {
+                throw new AuthException("Usuário ou Grupo não podem ser nulos.");
+            }
+            if (checked.add(Map.entry(dto.getGroupId(), dto.getUserId()))) {
+                authorize(store, dto.getGroupId(), dto.getUserId());
+            }
+        }
+        Log.info("AuthInterceptor", "AUTORIZADO: lote de %d mensagem(ns), %d par(es) grupo/usuário verificado(s).", items.size(), checked.size());
+    }
 
+    private void authorize(MessageStore store, String groupId, String userId) throws AuthException {
         if (userId == null || groupId == null) {
             throw new AuthException("Usuário ou Grupo não podem ser nulos.");
         }
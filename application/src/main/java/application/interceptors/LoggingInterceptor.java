@@ -9,6 +9,9 @@ public class LoggingInterceptor implements InvocationInterceptor {
 
     @Override
     public void beforeInvocation(InvocationContext context) throws Exception {
+        if (!Log.isInfoEnabled()) {
+            return;
+        }
         String methodName = context.getAbsoluteObjectReference().getMethod().getName();
         String path = context.getFullPath();
         String params = Arrays.toString(context.getMethodParameters());
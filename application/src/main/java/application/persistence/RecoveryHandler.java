@@ -0,0 +1,18 @@
+package application.persistence;
+
+import application.entity.Mensagem;
+
+/**
+ * Recebe os registos lidos do WriteAheadLog na recuperação.
+ * A ordem não é garantida (a compactação move registos de grupos e membros para segmentos
+ * mais recentes) e pode haver registos repetidos, por isso a reconstrução tem de ser idempotente.
+ */
+public interface RecoveryHandler {
+
+    void onGroupCreated(String groupId, String groupName);
+
+    void onMemberAdded(String groupId, String userId, String userName);
+
+    // a mensagem traz a sequência que tinha no log do grupo
+    void onMessage(Mensagem message);
+}
@@ -0,0 +1,175 @@
+package application.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import application.entity.Mensagem;
+
+/**
+ * Snapshot binário do estado do MessageStore:
+ *
+ *   [int magic][int versão][long primeiro segmento do log a repetir depois do snapshot]
+ *   entradas: [byte GROUP][id][nome][int n][n x (userId, userName)]
+ *             [byte MESSAGES][groupId][int n][n x (long sequência, long epoch millis, id, userId, conteúdo)]
+ *   [byte END][int CRC32C de tudo o que vem antes]
+ *
+ * Strings são um int com o tamanho em bytes (-1 para null) seguido do UTF-8.
+ * O nome do ficheiro leva o índice do segmento, para o log saber de onde continuar.
+ */
+final class SnapshotFile {
+
+    static final byte END = 0;
+    static final byte GROUP = 1;
+    static final byte MESSAGES = 2;
+
+    private static final int MAGIC = 0x4D534E50; // "MSNP"
+    private static final int VERSION = 1;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    private SnapshotFile() {
+    }
+
+    static Path path(Path directory, long segmentIndex) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, segmentIndex, SUFFIX));
+    }
+
+    /**
+     * Índice do segmento a partir do nome do ficheiro, ou -1 se não for um snapshot.
+     */
+    static long parseIndex(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) return -1;
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> parseIndex(file) >= 0).sorted().toList();
+        }
+    }
+
+    /**
+     * Escreve o snapshot num ficheiro temporário, sincroniza-o e só então lhe dá o nome final,
+     * para que um snapshot a meio nunca seja confundido com um completo.
+     *
+     * @return o writer usado, com as contagens do que foi escrito
+     */
+    static SnapshotWriter write(Path directory, long segmentIndex, SnapshotSource source) throws IOException {
+        Path target = path(directory, segmentIndex);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+
+        SnapshotWriter writer;
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            CRC32C crc = new CRC32C();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segmentIndex);
+
+            writer = new SnapshotWriter(out);
+            source.writeTo(writer);
+
+            out.writeByte(END);
+            out.flush();
+            // o CRC fica de fora da soma
+            file.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+            file.getChannel().force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(directory);
+        return writer;
+    }
+
+    /**
+     * Lê o snapshot (mapeado em memória, numa passagem sequencial) e entrega o estado ao handler.
+     *
+     * @throws IOException se o ficheiro estiver incompleto ou corrompido
+     */
+    static void load(Path file, RecoveryHandler handler) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int end = buffer.limit() - 4;
+        if (end < 17) {
+            throw new IOException("Snapshot incompleto: " + file);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, end));
+        if ((int) crc.getValue() != buffer.getInt(end) || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Snapshot corrompido: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Versão de snapshot não suportada (" + buffer.getInt(4) + "): " + file);
+        }
+
+        buffer.position(16);
+        byte type;
+        while ((type = buffer.get()) != END) {
+            switch (type) {
+                case GROUP -> {
+                    String groupId = getString(buffer);
+                    handler.onGroupCreated(groupId, getString(buffer));
+                    for (int members = buffer.getInt(); members > 0; members--) {
+                        handler.onMemberAdded(groupId, getString(buffer), getString(buffer));
+                    }
+                }
+                case MESSAGES -> {
+                    String groupId = getString(buffer);
+                    for (int messages = buffer.getInt(); messages > 0; messages--) {
+                        long sequence = buffer.getLong();
+                        LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong()), ZoneOffset.UTC);
+                        Mensagem message = new Mensagem(getString(buffer), getString(buffer), groupId, getString(buffer), timestamp);
+                        message.setSequence(sequence);
+                        handler.onMessage(message);
+                    }
+                }
+                default -> throw new IOException("Entrada desconhecida (" + type + ") no snapshot " + file);
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] utf8 = new byte[length];
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // torna o rename durável; nem todos os sistemas permitem abrir um diretório
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // sem suporte: o rename fica durável quando o sistema operativo o escrever
+        }
+    }
+}
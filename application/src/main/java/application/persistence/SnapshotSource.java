@@ -0,0 +1,14 @@
+package application.persistence;
+
+import java.io.IOException;
+
+/**
+ * Quem sabe escrever o estado completo num snapshot (o MessageStore).
+ * É chamado na thread de snapshots, em paralelo com as escritas normais: só pode fazer leituras
+ * que não bloqueiem quem escreve. Antes de ler tem de esperar que as alterações já escritas no log
+ * estejam aplicadas em memória, porque o log é escrito primeiro.
+ */
+public interface SnapshotSource {
+
+    void writeTo(SnapshotWriter writer) throws IOException;
+}
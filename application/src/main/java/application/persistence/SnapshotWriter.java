@@ -0,0 +1,68 @@
+package application.persistence;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import application.entity.Mensagem;
+
+/**
+ * Escreve as entradas de um snapshot no formato do {@link SnapshotFile}.
+ */
+public final class SnapshotWriter {
+
+    private final DataOutputStream out;
+    private int groups;
+    private long messages;
+
+    SnapshotWriter(DataOutputStream out) {
+        this.out = out;
+    }
+
+    public void group(String groupId, String groupName, Map<String, String> members) throws IOException {
+        out.writeByte(SnapshotFile.GROUP);
+        writeString(groupId);
+        writeString(groupName);
+        out.writeInt(members.size());
+        for (Map.Entry<String, String> member : members.entrySet()) {
+            writeString(member.getKey());
+            writeString(member.getValue());
+        }
+        groups++;
+    }
+
+    // mensagens retidas de um grupo, por ordem de sequência
+    public void messages(String groupId, List<Mensagem> retained) throws IOException {
+        out.writeByte(SnapshotFile.MESSAGES);
+        writeString(groupId);
+        out.writeInt(retained.size());
+        for (Mensagem message : retained) {
+            out.writeLong(message.getSequence());
+            out.writeLong(message.getTimestampAsInstant().toEpochMilli());
+            writeString(message.getId());
+            writeString(message.getUserId());
+            writeString(message.getContent());
+        }
+        messages += retained.size();
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    int getGroupCount() {
+        return groups;
+    }
+
+    long getMessageCount() {
+        return messages;
+    }
+}
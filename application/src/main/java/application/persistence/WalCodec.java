@@ -0,0 +1,182 @@
+package application.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+import application.entity.Mensagem;
+
+/**
+ * Formato binário dos registos do log:
+ *
+ *   [int tamanho do conteúdo][int CRC32C do conteúdo][byte tipo][campos do tipo]
+ *
+ * Strings são um int com o tamanho em bytes (-1 para null) seguido do UTF-8; datas são epoch
+ * millis em UTC. Um tamanho 0 marca o fim dos dados de um segmento (o ficheiro começa a zeros).
+ */
+final class WalCodec {
+
+    static final int HEADER_SIZE = 8;
+
+    static final byte GROUP_CREATED = 1;
+    static final byte MEMBER_ADDED = 2;
+    static final byte MESSAGE = 3;
+
+    private WalCodec() {
+    }
+
+    static byte[] groupCreated(String groupId, String groupName) {
+        byte[] group = utf8(groupId);
+        byte[] name = utf8(groupName);
+        ByteBuffer record = allocate(1 + size(group) + size(name));
+        record.put(GROUP_CREATED);
+        putString(record, group);
+        putString(record, name);
+        return seal(record);
+    }
+
+    static byte[] memberAdded(String groupId, String userId, String userName) {
+        byte[] group = utf8(groupId);
+        byte[] user = utf8(userId);
+        byte[] name = utf8(userName);
+        ByteBuffer record = allocate(1 + size(group) + size(user) + size(name));
+        record.put(MEMBER_ADDED);
+        putString(record, group);
+        putString(record, user);
+        putString(record, name);
+        return seal(record);
+    }
+
+    static byte[] message(Mensagem message) {
+        byte[] group = utf8(message.getGroupId());
+        byte[] id = utf8(message.getId());
+        byte[] user = utf8(message.getUserId());
+        byte[] content = utf8(message.getContent());
+        ByteBuffer record = allocate(1 + size(group) + 8 + 8 + size(id) + size(user) + size(content));
+        record.put(MESSAGE);
+        putString(record, group);
+        record.putLong(message.getSequence());
+        record.putLong(message.getTimestampAsInstant().toEpochMilli());
+        putString(record, id);
+        putString(record, user);
+        putString(record, content);
+        return seal(record);
+    }
+
+    // tamanho que message(message) vai ter, sem o codificar
+    static int messageSize(Mensagem message) {
+        return HEADER_SIZE + 1 + size(message.getGroupId()) + 8 + 8
+                + size(message.getId()) + size(message.getUserId()) + size(message.getContent());
+    }
+
+    /**
+     * Tamanho total (cabeçalho incluído) do registo válido em {@code position}, ou -1 se ali acabam
+     * os dados: zeros, um registo cortado a meio ou com CRC errado.
+     */
+    static int validate(ByteBuffer segment, int position) {
+        if (position + HEADER_SIZE > segment.limit()) return -1;
+        int length = segment.getInt(position);
+        if (length <= 0 || length > segment.limit() - position - HEADER_SIZE) return -1;
+
+        CRC32C crc = new CRC32C();
+        crc.update(segment.slice(position + HEADER_SIZE, length));
+        if ((int) crc.getValue() != segment.getInt(position + 4)) return -1;
+        return HEADER_SIZE + length;
+    }
+
+    static byte type(ByteBuffer segment, int position) {
+        return segment.get(position + HEADER_SIZE);
+    }
+
+    // entrega ao handler o registo (já validado) em position; devolve a sequência se for uma mensagem, senão -1
+    static long replay(ByteBuffer segment, int position, RecoveryHandler handler) {
+        ByteBuffer record = segment.slice(position + HEADER_SIZE, segment.getInt(position));
+        byte type = record.get();
+        switch (type) {
+            case GROUP_CREATED -> handler.onGroupCreated(getString(record), getString(record));
+            case MEMBER_ADDED -> handler.onMemberAdded(getString(record), getString(record), getString(record));
+            case MESSAGE -> {
+                String groupId = getString(record);
+                long sequence = record.getLong();
+                LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getLong()), ZoneOffset.UTC);
+                Mensagem message = new Mensagem(getString(record), getString(record), groupId, getString(record), timestamp);
+                message.setSequence(sequence);
+                handler.onMessage(message);
+                return sequence;
+            }
+            default -> throw new IllegalStateException("Tipo de registo desconhecido no log: " + type);
+        }
+        return -1;
+    }
+
+    // grupo de um registo de mensagem (já validado), sem descodificar o resto
+    static String messageGroup(ByteBuffer segment, int position) {
+        ByteBuffer record = segment.slice(position + HEADER_SIZE + 1, segment.getInt(position) - 1);
+        return getString(record);
+    }
+
+    private static ByteBuffer allocate(int contentSize) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + contentSize);
+        record.position(HEADER_SIZE);
+        return record;
+    }
+
+    private static byte[] seal(ByteBuffer record) {
+        int length = record.capacity() - HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int size(byte[] utf8) {
+        return 4 + (utf8 == null ? 0 : utf8.length);
+    }
+
+    // o mesmo que size(utf8(value)), sem criar o array
+    private static int size(String value) {
+        if (value == null) return 4;
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes += 1; // surrogate isolado: o encoder escreve '?'
+            } else {
+                bytes += 3;
+            }
+        }
+        return 4 + bytes;
+    }
+
+    private static void putString(ByteBuffer record, byte[] utf8) {
+        if (utf8 == null) {
+            record.putInt(-1);
+            return;
+        }
+        record.putInt(utf8.length);
+        record.put(utf8);
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) return null;
+        byte[] utf8 = new byte[length]; // o segmento é um buffer mapeado, sem array por trás
+        record.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,181 @@
+package application.persistence;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Um ficheiro do log, mapeado inteiro em memória. Escrever é só copiar bytes para o mapeamento;
+ * chegam ao disco quando o sistema operativo quiser ou quando o log chama {@link #sync()}.
+ *
+ * As escritas são feitas pelo WriteAheadLog com o seu lock; o sync e a compactação correm na
+ * thread de flush e só leem até {@link #writePosition}, onde os registos já estão completos.
+ */
+final class WalSegment {
+
+    private final long index;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private volatile int writePosition;
+    private int syncedPosition;
+
+    // maior sequência de mensagem escrita neste segmento, por grupo (decide quando pode ser compactado)
+    private final Map<String, Long> maxSequenceByGroup = new ConcurrentHashMap<>();
+
+    private WalSegment(long index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static WalSegment open(Path directory, long index, int size) throws IOException {
+        Path path = directory.resolve(fileName(index));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // um segmento de uma configuração anterior com outro tamanho é lido inteiro
+            long mappedSize = Math.max(size, channel.size());
+            return new WalSegment(index, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static String fileName(long index) {
+        return String.format("segment-%020d.wal", index);
+    }
+
+    /**
+     * Índice do segmento a partir do nome do ficheiro, ou -1 se não for um segmento.
+     */
+    static long parseIndex(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("segment-") || !name.endsWith(".wal")) return -1;
+        try {
+            return Long.parseLong(name.substring("segment-".length(), name.length() - ".wal".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Lê os registos válidos desde o início, entregando-os ao handler, e posiciona a escrita no fim deles.
+     * A leitura pára no primeiro registo inválido (escrita interrompida por uma queda).
+     */
+    void recover(RecoveryHandler handler) {
+        int position = 0;
+        int length;
+        while ((length = WalCodec.validate(buffer, position)) > 0) {
+            long sequence = WalCodec.replay(buffer, position, handler);
+            if (sequence >= 0) {
+                recordSequence(WalCodec.messageGroup(buffer, position), sequence);
+            }
+            position += length;
+        }
+        writePosition = position;
+        syncedPosition = position;
+    }
+
+    /**
+     * Apaga o que estiver depois do último registo válido, antes de voltar a escrever no segmento,
+     * para que restos de uma escrita interrompida nunca se misturem com registos novos.
+     */
+    void discardTail() {
+        boolean dirty = false;
+        for (int i = writePosition; i < buffer.limit(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+                dirty = true;
+            }
+        }
+        if (dirty) {
+            buffer.force(writePosition, buffer.limit() - writePosition);
+        }
+    }
+
+    /**
+     * Copia o registo para o fim do segmento; false se não couber.
+     * Só chamado com o lock de escrita do WriteAheadLog.
+     */
+    boolean tryAppend(byte[] record) {
+        int position = writePosition;
+        if (record.length > buffer.limit() - position) return false;
+        buffer.put(position, record);
+        writePosition = position + record.length; // publica o registo completo para o sync
+        return true;
+    }
+
+    void recordSequence(String groupId, long sequence) {
+        maxSequenceByGroup.merge(groupId, sequence, Math::max);
+    }
+
+    // força para o disco o que foi escrito desde o último sync
+    synchronized void sync() {
+        int end = writePosition;
+        if (end > syncedPosition) {
+            buffer.force(syncedPosition, end - syncedPosition);
+            syncedPosition = end;
+        }
+    }
+
+    synchronized boolean isSynced() {
+        return syncedPosition == writePosition;
+    }
+
+    /**
+     * Pode ser apagado quando tem mensagens e todas já saíram da janela retida do seu grupo.
+     * Segmentos só com grupos e membros nunca são compactados, para não serem copiados em círculo.
+     */
+    boolean isObsolete(ToLongFunction<String> firstRetainedSequence) {
+        if (maxSequenceByGroup.isEmpty()) return false;
+        for (Map.Entry<String, Long> entry : maxSequenceByGroup.entrySet()) {
+            if (entry.getValue() >= firstRetainedSequence.applyAsLong(entry.getKey())) return false;
+        }
+        return true;
+    }
+
+    // cópias dos registos de grupos e membros, que continuam a valer depois da compactação
+    List<byte[]> metadataRecords() {
+        List<byte[]> records = new ArrayList<>();
+        int end = writePosition;
+        int position = 0;
+        int length;
+        while (position < end && (length = WalCodec.validate(buffer, position)) > 0) {
+            if (WalCodec.type(buffer, position) != WalCodec.MESSAGE) {
+                byte[] record = new byte[length];
+                buffer.get(position, record);
+                records.add(record);
+            }
+            position += length;
+        }
+        return records;
+    }
+
+    void close() throws IOException {
+        channel.close(); // o mapeamento continua válido até ser recolhido
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    long getIndex() {
+        return index;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+}
@@ -0,0 +1,429 @@
+package application.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+import application.entity.Mensagem;
+import middleware.util.Log;
+
+/**
+ * Log append-only, em segmentos mapeados em memória, com os grupos, membros e mensagens do MessageStore.
+ *
+ * Quem escreve só copia o registo para o segmento atual (sem esperar pelo disco); uma thread de flush
+ * faz o fsync de todos os registos pendentes de uma vez (group commit), de syncIntervalMs em
+ * syncIntervalMs ou assim que se acumulem syncEveryRecords. Uma queda do processo não perde nada
+ * (os dados já estão na page cache); uma queda do sistema perde no máximo o que ainda não foi sincronizado.
+ *
+ * Periodicamente é escrito um snapshot do estado completo ({@link SnapshotFile}); os segmentos
+ * anteriores a ele deixam de ser precisos e a recuperação passa a ler o snapshot e só os segmentos
+ * seguintes. O log é cortado num novo segmento antes de o estado ser lido, e o {@link SnapshotSource}
+ * espera que as alterações escritas antes do corte estejam aplicadas em memória (cada alteração vai
+ * para o log antes de ser aplicada), por isso tudo o que está nos segmentos anteriores ao corte está
+ * no snapshot; o que estiver nos dois é aplicado duas vezes, sem efeito.
+ *
+ * Uso: {@link #open}, {@link #recover} para reconstruir o estado, {@link #start} para arrancar o flush,
+ * a compactação e os snapshots, e {@link #close} no fim.
+ */
+public class WriteAheadLog implements Closeable {
+
+    // intervalo da thread de flush quando não há fsync periódico (compactação e segmentos fechados)
+    private static final long IDLE_INTERVAL_MS = 1_000;
+
+    private final WriteAheadLogConfig config;
+    private final Object writeLock = new Object();
+    // quem fecha ou apaga segmentos fechados (flush, compactação, snapshot); pode tomar o writeLock, nunca o contrário
+    private final Object sealedLock = new Object();
+
+    private final Deque<WalSegment> sealed = new ConcurrentLinkedDeque<>(); // do mais antigo para o mais recente
+    private volatile WalSegment head;
+    private final AtomicLong unsyncedRecords = new AtomicLong();
+
+    private volatile ToLongFunction<String> firstRetainedSequence;
+    private volatile SnapshotSource snapshotSource;
+    private volatile long snapshotSegment = -1; // segmento onde começa o último snapshot
+    private ScheduledExecutorService snapshotScheduler;
+    private volatile Thread flusher;
+    private volatile boolean closed;
+
+    private WriteAheadLog(WriteAheadLogConfig config) {
+        this.config = config;
+    }
+
+    public static WriteAheadLog open(WriteAheadLogConfig config) throws IOException {
+        Files.createDirectories(config.getDirectory());
+        return new WriteAheadLog(config);
+    }
+
+    /**
+     * Carrega o snapshot mais recente, se houver, e lê os segmentos seguintes a ele, do mais antigo
+     * para o mais recente; prepara o log para continuar a escrever no último.
+     * Tem de ser chamado uma vez, antes de qualquer escrita.
+     */
+    public void recover(RecoveryHandler handler) throws IOException {
+        Path directory = config.getDirectory();
+        long firstSegment = 0;
+        List<Path> snapshots = SnapshotFile.list(directory);
+        if (!snapshots.isEmpty()) {
+            Path latest = snapshots.get(snapshots.size() - 1);
+            long start = System.nanoTime();
+            SnapshotFile.load(latest, handler);
+            firstSegment = SnapshotFile.parseIndex(latest);
+            Log.info("WriteAheadLog", "Snapshot %s carregado em %d ms.",
+                    latest.getFileName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        List<Long> indexes = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(WalSegment::parseIndex).filter(index -> index >= 0).sorted(Comparator.naturalOrder()).forEach(indexes::add);
+        }
+
+        synchronized (writeLock) {
+            if (head != null) {
+                throw new IllegalStateException("O write-ahead log já foi recuperado.");
+            }
+            snapshotSegment = firstSegment;
+            int withData = 0;
+            for (long index : indexes) {
+                if (index < firstSegment) {
+                    // já coberto pelo snapshot (a queda foi antes de o apagar)
+                    Files.deleteIfExists(directory.resolve(WalSegment.fileName(index)));
+                    continue;
+                }
+                WalSegment segment = WalSegment.open(config.getDirectory(), index, config.getSegmentSize());
+                segment.recover(handler);
+                if (head != null) {
+                    head.close();
+                    sealed.addLast(head);
+                }
+                head = segment;
+                if (segment.getWritePosition() > 0) withData++;
+            }
+
+            if (head == null) {
+                head = WalSegment.open(config.getDirectory(), firstSegment, config.getSegmentSize());
+            } else {
+                head.discardTail();
+            }
+            Log.info("WriteAheadLog", "Log recuperado de %s: %d segmento(s), %d com dados.",
+                    config.getDirectory(), indexes.size(), withData);
+        }
+    }
+
+    public void start(ToLongFunction<String> firstRetainedSequence) {
+        start(firstRetainedSequence, null);
+    }
+
+    /**
+     * Arranca a thread de flush e, com {@code snapshotSource}, os snapshots periódicos. A compactação
+     * apaga segmentos cujas mensagens já estão todas antes de {@code firstRetainedSequence} (a primeira
+     * sequência ainda retida de cada grupo).
+     */
+    public void start(ToLongFunction<String> firstRetainedSequence, SnapshotSource snapshotSource) {
+        requireRecovered();
+        this.firstRetainedSequence = firstRetainedSequence;
+        this.snapshotSource = snapshotSource;
+
+        Thread thread = new Thread(this::flushLoop, "wal-flusher");
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+
+        long interval = config.getSnapshotIntervalMs();
+        if (snapshotSource != null && interval > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread snapshotThread = new Thread(task, "wal-snapshot");
+                snapshotThread.setDaemon(true);
+                return snapshotThread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Escreve um snapshot do estado atual e apaga os segmentos e snapshots que ele torna desnecessários.
+     * Quem escreve no log não fica bloqueado enquanto o estado é lido e gravado.
+     */
+    public synchronized void snapshot() throws IOException {
+        SnapshotSource source = snapshotSource;
+        if (source == null) {
+            throw new IllegalStateException("Nenhuma fonte de snapshots registada (ver start).");
+        }
+
+        long fence;
+        synchronized (writeLock) {
+            if (closed) return;
+            if (head.getWritePosition() == 0 && sealed.isEmpty() && head.getIndex() == snapshotSegment) {
+                return; // nada de novo desde o último snapshot
+            }
+            // daqui para a frente os registos vão para segmentos a partir de 'fence'
+            if (head.getWritePosition() > 0) {
+                roll();
+            }
+            fence = head.getIndex();
+        }
+
+        long start = System.nanoTime();
+        SnapshotWriter written = SnapshotFile.write(config.getDirectory(), fence, source);
+        snapshotSegment = fence;
+
+        synchronized (sealedLock) {
+            for (WalSegment segment : sealed) {
+                if (segment.getIndex() < fence) {
+                    sealed.remove(segment);
+                    segment.delete();
+                }
+            }
+        }
+        for (Path old : SnapshotFile.list(config.getDirectory())) {
+            if (SnapshotFile.parseIndex(old) < fence) {
+                Files.deleteIfExists(old);
+            }
+        }
+        Log.info("WriteAheadLog", "Snapshot escrito em %d ms: %d grupo(s), %d mensagem(ns).",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), written.getGroupCount(), written.getMessageCount());
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            Log.error("WriteAheadLog", "Erro ao escrever snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    public void appendGroupCreated(String groupId, String groupName) {
+        append(WalCodec.groupCreated(groupId, groupName), null, -1);
+    }
+
+    public void appendMemberAdded(String groupId, String userId, String userName) {
+        append(WalCodec.memberAdded(groupId, userId, userName), null, -1);
+    }
+
+    // a mensagem já tem de ter a sequência atribuída pelo log do grupo
+    public void appendMessage(Mensagem message) {
+        append(WalCodec.message(message), message.getGroupId(), message.getSequence());
+    }
+
+    // se o registo da mensagem cabe num segmento; as que não cabem são recusadas por appendMessage(s)
+    public boolean fits(Mensagem message) {
+        return WalCodec.messageSize(message) <= config.getSegmentSize();
+    }
+
+    /**
+     * Como {@link #appendMessage}, para várias mensagens de uma vez: os registos são codificados
+     * fora do lock e escritos seguidos, com uma só aquisição do lock.
+     *
+     * @return quantas mensagens, do início da lista, ficaram escritas: todas, ou menos se não foi
+     *         possível criar um novo segmento a meio (as seguintes não chegam ao log). As exceções
+     *         (registo grande demais, log fechado) só acontecem antes de qualquer escrita.
+     */
+    public int appendMessages(List<Mensagem> messages) {
+        if (messages.isEmpty()) return 0;
+        byte[][] records = new byte[messages.size()][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = checkSize(WalCodec.message(messages.get(i)));
+        }
+
+        int written = 0;
+        try {
+            synchronized (writeLock) {
+                requireWritable();
+                for (; written < records.length; written++) {
+                    Mensagem message = messages.get(written);
+                    write(records[written], message.getGroupId(), message.getSequence());
+                }
+            }
+        } catch (UncheckedIOException e) {
+            Log.error("WriteAheadLog", "Lote escrito só em parte (" + written + " de " + records.length + "): " + e.getMessage(), e);
+        }
+        if (written > 0) {
+            recordsWritten(written);
+        }
+        return written;
+    }
+
+    private void append(byte[] record, String groupId, long sequence) {
+        checkSize(record);
+        synchronized (writeLock) {
+            requireWritable();
+            write(record, groupId, sequence);
+        }
+        recordsWritten(1);
+    }
+
+    private byte[] checkSize(byte[] record) {
+        if (record.length > config.getSegmentSize()) {
+            throw new IllegalArgumentException("Registo de " + record.length + " bytes não cabe num segmento do log.");
+        }
+        return record;
+    }
+
+    private void requireWritable() {
+        requireRecovered();
+        if (closed) {
+            throw new IllegalStateException("O write-ahead log está fechado.");
+        }
+    }
+
+    // só com o lock de escrita
+    private void write(byte[] record, String groupId, long sequence) {
+        if (!head.tryAppend(record)) {
+            roll();
+            head.tryAppend(record);
+        }
+        if (groupId != null) {
+            head.recordSequence(groupId, sequence);
+        }
+    }
+
+    private void recordsWritten(int count) {
+        int everyRecords = config.getSyncEveryRecords();
+        long unsynced = unsyncedRecords.addAndGet(count);
+        // acorda a thread de flush só quando o limite é atravessado, não a cada registo depois dele
+        if (everyRecords > 0 && unsynced >= everyRecords && unsynced - count < everyRecords) {
+            LockSupport.unpark(flusher); // o fsync fica com a thread de flush; quem escreve não espera
+        }
+    }
+
+    // fecha o segmento atual e começa outro; o fsync do antigo fica para a thread de flush
+    private void roll() {
+        WalSegment previous = head;
+        try {
+            head = WalSegment.open(config.getDirectory(), previous.getIndex() + 1, config.getSegmentSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível criar um novo segmento do log.", e);
+        }
+        sealed.addLast(previous);
+        LockSupport.unpark(flusher);
+    }
+
+    /**
+     * Força para o disco tudo o que já foi escrito.
+     */
+    public void sync() throws IOException {
+        unsyncedRecords.set(0);
+        syncSealed();
+        head.sync();
+    }
+
+    private void flushLoop() {
+        long interval = config.getSyncIntervalMs() > 0 ? config.getSyncIntervalMs() : IDLE_INTERVAL_MS;
+        int everyRecords = config.getSyncEveryRecords();
+        long lastSync = System.nanoTime();
+
+        while (!closed) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(interval));
+            if (closed) break;
+            try {
+                long now = System.nanoTime();
+                boolean due = (config.getSyncIntervalMs() > 0 && now - lastSync >= TimeUnit.MILLISECONDS.toNanos(config.getSyncIntervalMs()))
+                        || (everyRecords > 0 && unsyncedRecords.get() >= everyRecords);
+                if (due) {
+                    sync();
+                    lastSync = now;
+                } else {
+                    syncSealed();
+                }
+                compact();
+            } catch (IOException | RuntimeException e) {
+                Log.error("WriteAheadLog", "Erro no flush do log: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // segmentos fechados são sempre sincronizados, mesmo sem fsync periódico, antes de poderem ser compactados
+    private void syncSealed() throws IOException {
+        synchronized (sealedLock) {
+            for (WalSegment segment : sealed) {
+                if (!segment.isSynced()) {
+                    segment.sync();
+                    segment.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Apaga os segmentos fechados que já só têm mensagens fora da janela retida. Os registos de
+     * grupos e membros que lá estão são copiados para o segmento atual (e sincronizados) antes.
+     */
+    private void compact() throws IOException {
+        ToLongFunction<String> retention = firstRetainedSequence;
+        if (retention == null) return;
+
+        int removed = 0;
+        synchronized (sealedLock) { // o snapshot também apaga segmentos fechados
+            for (WalSegment segment : sealed) {
+                if (!segment.isSynced() || !segment.isObsolete(retention)) continue;
+
+                for (byte[] record : segment.metadataRecords()) {
+                    append(record, null, -1);
+                }
+                sync();
+                sealed.remove(segment);
+                segment.delete();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            Log.info("WriteAheadLog", "Compactação: %d segmento(s) apagado(s).", removed);
+        }
+    }
+
+    private void requireRecovered() {
+        if (head == null) {
+            throw new IllegalStateException("Chame recover() antes de usar o write-ahead log.");
+        }
+    }
+
+    public long getUnsyncedRecords() {
+        return unsyncedRecords.get();
+    }
+
+    public int getSegmentCount() {
+        return sealed.size() + (head != null ? 1 : 0);
+    }
+
+    /**
+     * Pára a thread de flush e força para o disco o que faltar.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) return;
+            closed = true;
+        }
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        Thread thread = flusher;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (head != null) {
+            sync();
+            head.close();
+        }
+        Log.info("WriteAheadLog", "Log fechado.");
+    }
+}
@@ -0,0 +1,64 @@
+package application.persistence;
+
+import java.nio.file.Path;
+
+/**
+ * Parâmetros do WriteAheadLog. Só o diretório é obrigatório; os restantes têm padrões razoáveis.
+ */
+public class WriteAheadLogConfig {
+
+    private final Path directory;
+
+    // tamanho de cada ficheiro de segmento (mapeado inteiro em memória)
+    private int segmentSize = 16 * 1024 * 1024;
+
+    // fsync em grupo: de syncIntervalMs em syncIntervalMs, ou assim que houver syncEveryRecords registos
+    // por sincronizar; 0 desliga o critério (com os dois a 0 fica a cargo do sistema operativo)
+    private long syncIntervalMs = 200;
+    private int syncEveryRecords = 1_000;
+
+    // intervalo entre snapshots do estado completo; cada snapshot deixa apagar os segmentos anteriores
+    // e encurta a recuperação (0 desliga)
+    private long snapshotIntervalMs = 60_000;
+
+    public WriteAheadLogConfig(Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory não pode ser nulo.");
+        }
+        this.directory = directory;
+    }
+
+    public Path getDirectory() { return directory; }
+
+    public int getSegmentSize() { return segmentSize; }
+    public void setSegmentSize(int segmentSize) {
+        if (segmentSize < 64 * 1024) {
+            throw new IllegalArgumentException("segmentSize deve ter pelo menos 64 KiB.");
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    public long getSyncIntervalMs() { return syncIntervalMs; }
+    public void setSyncIntervalMs(long syncIntervalMs) {
+        if (syncIntervalMs < 0) {
+            throw new IllegalArgumentException("syncIntervalMs não pode ser negativo.");
+        }
+        this.syncIntervalMs = syncIntervalMs;
+    }
+
+    public int getSyncEveryRecords() { return syncEveryRecords; }
+    public void setSyncEveryRecords(int syncEveryRecords) {
+        if (syncEveryRecords < 0) {
+            throw new IllegalArgumentException("syncEveryRecords não pode ser negativo.");
+        }
+        this.syncEveryRecords = syncEveryRecords;
+    }
+
+    public long getSnapshotIntervalMs() { return snapshotIntervalMs; }
+    public void setSnapshotIntervalMs(long snapshotIntervalMs) {
+        if (snapshotIntervalMs < 0) {
+            throw new IllegalArgumentException("snapshotIntervalMs não pode ser negativo.");
+        }
+        this.snapshotIntervalMs = snapshotIntervalMs;
+    }
+}
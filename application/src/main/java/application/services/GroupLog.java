@@ -0,0 +1,182 @@
+package application.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import application.entity.Mensagem;
+
+/**
+ * Log de mensagens de um grupo: buffer circular de capacidade fixa, seguro para vários escritores.
+ *
+ * Cada mensagem recebe um número de sequência (CAS no contador) que decide o slot onde fica;
+ * quando o buffer dá a volta a mensagem mais antiga é simplesmente sobrescrita. O slot guarda
+ * também a sequência da mensagem que lá está, publicada depois da mensagem, o que permite aos
+ * leitores tirar um snapshot coerente sem bloquear os escritores (ao estilo de um seqlock).
+ *
+ * A sequência é também o cursor da leitura incremental: {@link #since(long)} devolve só as
+ * mensagens posteriores a um cursor e {@link #awaitAfter(long)} avisa quando elas chegarem.
+ */
+final class GroupLog {
+
+    // sequência de um slot enquanto um escritor o está a alterar
+    private static final long WRITING = -1;
+
+    private final int capacity;
+    private final AtomicReferenceArray<Mensagem> messages;
+    private final AtomicLongArray sequences;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private long firstSequence; // primeira sequência existente (maior que 0 num log recuperado)
+
+    // leitores à espera de mensagens novas (long-polling); um conjunto, para o timeout de cada um sair em O(1)
+    private final Set<CompletableFuture<Void>> waiters = ConcurrentHashMap.newKeySet();
+
+    GroupLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("A capacidade do log deve ser positiva.");
+        }
+        this.capacity = capacity;
+        this.messages = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        // cada slot começa como se a volta anterior (-1) já tivesse sido escrita
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i - capacity);
+        }
+    }
+
+    /**
+     * Repõe as mensagens de um log recuperado, já ordenadas por sequência. Só num log vazio e antes
+     * de ser partilhado. As mensagens ficam com sequências contíguas terminadas na da última, o que
+     * mantém as sequências originais (e os cursores dos clientes) sempre que não há falhas entre elas.
+     */
+    void restore(List<Mensagem> ordered) {
+        if (ordered.isEmpty()) return;
+        if (!isEmpty()) {
+            throw new IllegalStateException("Só é possível repor um log vazio.");
+        }
+
+        long first = ordered.get(ordered.size() - 1).getSequence() + 1 - ordered.size();
+        // cada slot fica como se a volta anterior à primeira sequência já tivesse sido escrita
+        for (long sequence = first; sequence < first + capacity; sequence++) {
+            sequences.set((int) (sequence % capacity), sequence - capacity);
+        }
+        firstSequence = first;
+        nextSequence.set(first);
+        for (Mensagem message : ordered) {
+            append(message);
+        }
+    }
+
+    /**
+     * Sequência que o próximo {@link #append} vai atribuir. Só é estável com um único escritor (a
+     * thread do shard), que a usa para escrever a mensagem no WAL antes de a publicar aqui.
+     */
+    long nextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Acrescenta a mensagem e devolve a sua sequência no grupo.
+     */
+    long append(Mensagem message) {
+        long sequence = nextSequence.getAndIncrement();
+        int slot = (int) (sequence % capacity);
+
+        // só com escritores a dar uma volta inteira ao buffer em simultâneo é preciso esperar
+        // que o escritor da volta anterior termine este slot
+        for (int spins = 0; sequences.get(slot) != sequence - capacity; spins++) {
+            if (spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield(); // o escritor em falta pode não estar a correr
+            }
+        }
+
+        message.setSequence(sequence);
+        sequences.set(slot, WRITING);
+        messages.set(slot, message);
+        sequences.set(slot, sequence); // publica
+
+        for (CompletableFuture<Void> waiter : waiters) {
+            if (waiters.remove(waiter)) {
+                waiter.complete(null);
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Snapshot das mensagens em ordem de chegada. Mensagens sobrescritas durante a leitura ficam de
+     * fora; a leitura pára na primeira mensagem reservada mas ainda não publicada, para nunca
+     * devolver uma mensagem mais nova sem as anteriores.
+     */
+    List<Mensagem> snapshot() {
+        return since(-1);
+    }
+
+    /**
+     * Como {@link #snapshot()}, mas só com as mensagens de sequência maior que {@code cursor}.
+     * O custo depende do número de mensagens novas, não do tamanho do log.
+     */
+    List<Mensagem> since(long cursor) {
+        long end = nextSequence.get();
+        long start = Math.max(Math.max(firstSequence, cursor + 1), end - capacity);
+        if (start >= end) return List.of();
+
+        List<Mensagem> result = new ArrayList<>((int) (end - start));
+
+        for (long expected = start; expected < end; expected++) {
+            int slot = (int) (expected % capacity);
+            long before = sequences.get(slot);
+            if (before < expected) break;       // ainda a ser escrita
+            if (before > expected) continue;    // já sobrescrita por uma mensagem mais nova
+
+            Mensagem message = messages.get(slot);
+            if (sequences.get(slot) != expected) continue; // sobrescrita enquanto líamos
+            result.add(message);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Completa quando houver uma mensagem publicada com sequência maior que {@code cursor}
+     * (imediatamente, se já houver).
+     */
+    CompletableFuture<Void> awaitAfter(long cursor) {
+        CompletableFuture<Void> signal = new CompletableFuture<>();
+        waiters.add(signal);
+        signal.whenComplete((ignored, failure) -> waiters.remove(signal)); // ex.: timeout
+
+        // uma mensagem publicada antes do registo acima não acordou este leitor
+        if (isPublishedAfter(cursor)) {
+            signal.complete(null);
+        }
+        return signal;
+    }
+
+    private boolean isPublishedAfter(long cursor) {
+        long next = Math.max(firstSequence, cursor + 1);
+        // o slot tem a mensagem 'next' ou uma mais nova que já a sobrescreveu
+        return sequences.get((int) (next % capacity)) >= next;
+    }
+
+    // primeira sequência que este log chegou a ter (a da primeira mensagem reposta, num log recuperado)
+    long firstSequence() {
+        return firstSequence;
+    }
+
+    // sequência da mensagem mais antiga ainda no buffer (as anteriores já foram sobrescritas)
+    long firstRetainedSequence() {
+        return Math.max(firstSequence, nextSequence.get() - capacity);
+    }
+
+    boolean isEmpty() {
+        return nextSequence.get() == 0;
+    }
+}
@@ -5,10 +5,9 @@ import application.dto.GroupIdDTO;
 import application.entity.Mensagem;
 
 import java.time.format.DateTimeFormatter;
-import java.util.LinkedList;
+import java.util.List;
 import middleware.lifecycle.annotations.LifecyclePolicy;
 import middleware.lifecycle.annotations.LifecyclePolicyType;
-import middleware.lifecycle.annotations.Pooled;
 
 @LifecyclePolicy(LifecyclePolicyType.PER_REQUEST)
 @RequestMapping(path = "/formatter")
@@ -21,8 +20,9 @@ public class MessageFormatter {
     }
 
     @GetMapping(path = "/getFormattedMessages")
+    @Cacheable(tags = "group:{groupId}") // invalidado pelas escritas do MessageStore no mesmo grupo
     public String format(@RequestBody GroupIdDTO data) {
-        LinkedList<Mensagem> rawMessages = messageStore.getMessagesForGroup(data);
+        List<Mensagem> rawMessages = messageStore.getMessagesForGroup(data);
 
         if (rawMessages == null || rawMessages.isEmpty()) {
             return "Nenhuma mensagem para o grupo " + data.getGroupId();
@@ -4,100 +4,484 @@ import middleware.component_model.annotations.*;
 import application.dto.*;
 import application.entity.Grupo;
 import application.entity.Mensagem;
+import application.persistence.RecoveryHandler;
+import application.persistence.SnapshotWriter;
+import application.persistence.WriteAheadLog;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.TimeUnit;
 
+import middleware.exceptions.ServiceUnavailableException;
 import middleware.lifecycle.annotations.LifecyclePolicy;
 import middleware.lifecycle.annotations.LifecyclePolicyType;
+import middleware.streaming.EventSink;
+import middleware.streaming.OverflowPolicy;
+import middleware.streaming.StreamEvent;
 import middleware.util.Log;
 
 @LifecyclePolicy(LifecyclePolicyType.STATIC_INSTANCE)
 @RequestMapping(path = "/messagestore")
 public class MessageStore {
-    private final Map<String, LinkedList<Mensagem>> groupLogs = new ConcurrentHashMap<>();
-    private final Map<String, Grupo> activeGroups = new ConcurrentHashMap<>();
+    // tempo máximo que um pedido de getMessagesSince fica à espera de mensagens novas
+    private static final long MAX_LONG_POLL_MS = 30_000;
+
+    // fila de alterações pendentes de cada shard; cheia, os pedidos recebem 503
+    private static final int SHARD_QUEUE_CAPACITY = 10_000;
+
+    private final StoreShard[] shards;
     private final int logCapacity;
+    private final WriteAheadLog wal; // null: estado só em memória
 
     public MessageStore(int logCapacity) {
+        this(logCapacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param shardCount número de partições; cada uma tem a sua thread de escrita
+     */
+    public MessageStore(int logCapacity, int shardCount) {
         this.logCapacity = logCapacity;
+        this.wal = null;
+        this.shards = createShards(shardCount);
+        populateSampleData();
+    }
+
+    public MessageStore(int logCapacity, WriteAheadLog wal) throws IOException {
+        this(logCapacity, Runtime.getRuntime().availableProcessors(), wal);
+    }
+
+    /**
+     * MessageStore persistente: o estado é reconstruído a partir do {@code wal} e todas as alterações
+     * passam a ser escritas nele. Os dados de exemplo só são criados se o log estiver vazio.
+     */
+    public MessageStore(int logCapacity, int shardCount, WriteAheadLog wal) throws IOException {
+        this.logCapacity = logCapacity;
+        this.wal = wal;
+        this.shards = createShards(shardCount);
+        recover(wal);
+        if (isEmpty()) {
+            populateSampleData();
+        }
+        wal.start(this::firstRetainedSequence, this::writeSnapshot);
+    }
+
+    private static StoreShard[] createShards(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("O número de shards deve ser positivo.");
+        }
+        StoreShard[] shards = new StoreShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new StoreShard(i, SHARD_QUEUE_CAPACITY);
+        }
+        return shards;
+    }
+
+    // shard dono do grupo; o hash é espalhado para que ids parecidos não caiam todos no mesmo
+    private StoreShard shardFor(String groupId) {
+        int hash = groupId.hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    private boolean isEmpty() {
+        for (StoreShard shard : shards) {
+            if (!shard.groups.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    // corre no construtor, antes de o store ser partilhado, por isso não passa pelas threads dos shards
+    private void populateSampleData() {
         Log.info("MessageStore", "MessageStore populado com dados de exemplo.");
+        StoreShard shard = shardFor("grupo-123");
+        createGroupInternal(shard, "grupo-123", "Grupo de Teste");
+        addMemberInternal(shard.groups.get("grupo-123"), "user-Alice", "Alice");
+        addMemberInternal(shard.groups.get("grupo-123"), "user-Bob", "Bob");
+        addMessageInternal(shard, new Mensagem(UUID.randomUUID().toString(), "user-Alice", "grupo-123", "Olá, pessoal!"));
+    }
+
+    // Reconstrói grupos, membros e logs a partir dos registos do disco. Os registos podem vir fora de
+    // ordem e repetidos, por isso tudo é juntado primeiro e só depois aplicado.
+    private void recover(WriteAheadLog wal) throws IOException {
+        Map<String, String> groups = new HashMap<>();
+        List<String[]> members = new ArrayList<>();
+        Map<String, TreeMap<Long, Mensagem>> messages = new HashMap<>();
+
+        wal.recover(new RecoveryHandler() {
+            @Override
+            public void onGroupCreated(String groupId, String groupName) {
+                groups.putIfAbsent(groupId, groupName);
+            }
 
-        Grupo g1 = new Grupo("grupo-123", "Grupo de Teste");
-        g1.adicionarMembro("user-Alice", "Alice");
-        g1.adicionarMembro("user-Bob", "Bob");
-        activeGroups.put("grupo-123", g1);
-        addMessageInternal("grupo-123", new Mensagem(UUID.randomUUID().toString(), "user-Alice", "grupo-123", "Olá, pessoal!"));
+            @Override
+            public void onMemberAdded(String groupId, String userId, String userName) {
+                members.add(new String[] {groupId, userId, userName});
+            }
+
+            @Override
+            public void onMessage(Mensagem message) {
+                TreeMap<Long, Mensagem> retained = messages.computeIfAbsent(message.getGroupId(), k -> new TreeMap<>());
+                retained.put(message.getSequence(), message);
+                if (retained.size() > logCapacity) {
+                    retained.pollFirstEntry(); // só as últimas logCapacity cabem no log do grupo
+                }
+            }
+        });
+
+        groups.forEach((groupId, groupName) -> {
+            StoreShard shard = shardFor(groupId);
+            shard.groups.put(groupId, new Grupo(groupId, groupName));
+            GroupLog log = new GroupLog(logCapacity);
+            log.restore(new ArrayList<>(messages.getOrDefault(groupId, new TreeMap<>()).values()));
+            shard.logs.put(groupId, log);
+        });
+        for (String[] member : members) {
+            Grupo grupo = shardFor(member[0]).groups.get(member[0]);
+            if (grupo != null) {
+                grupo.adicionarMembro(member[1], member[2]);
+            }
+        }
+
+        Log.info("MessageStore", "Estado recuperado: %d grupo(s), %d membro(s), mensagens em %d grupo(s).",
+                groups.size(), members.size(), messages.size());
     }
 
-    // popular dados de exemplo
-    private void addMessageInternal(String groupId, Mensagem message) {
-        groupLogs.computeIfAbsent(groupId, k -> new LinkedList<>()).addLast(message);
-        checkAndClean(groupId);
+    // Estado completo para o snapshot do log. Só leituras que não bloqueiam: os logs dos grupos são
+    // lidos como em getMessages, e os membros são copiados.
+    private void writeSnapshot(SnapshotWriter writer) throws IOException {
+        // o log já foi cortado: uma alteração escrita antes do corte pode ainda não estar em memória
+        for (StoreShard shard : shards) {
+            shard.awaitApplied();
+        }
+        for (StoreShard shard : shards) {
+            for (Grupo grupo : shard.groups.values()) {
+                writer.group(grupo.getId(), grupo.getNome(), Map.copyOf(grupo.getMembrosMap()));
+            }
+            for (Map.Entry<String, GroupLog> entry : shard.logs.entrySet()) {
+                writer.messages(entry.getKey(), entry.getValue().snapshot());
+            }
+        }
     }
 
-    @PostMapping(path = "/addMessage")
-    public String addMessage(@RequestBody AddMessageDTO data) {
-        Mensagem message = new Mensagem(UUID.randomUUID().toString(), data.getUserId(), data.getGroupId(), data.getContent());
-        Grupo grupo = activeGroups.get(data.getGroupId());
+    // primeira sequência ainda retida em memória; as mensagens anteriores podem sair do disco
+    private long firstRetainedSequence(String groupId) {
+        GroupLog log = shardFor(groupId).logs.get(groupId);
+        return log != null ? log.firstRetainedSequence() : 0;
+    }
+
+    // --- alterações: só na thread do shard (ou no construtor) ---
+
+    private boolean createGroupInternal(StoreShard shard, String groupId, String groupName) {
+        if (shard.groups.containsKey(groupId)) {
+            return false;
+        }
+        // primeiro o WAL: se a escrita falhar, a alteração não chega a ficar visível
+        if (wal != null) {
+            wal.appendGroupCreated(groupId, groupName);
+        }
+        // o log existe antes de o grupo ficar visível, para que os leitores nunca o tenham de criar
+        shard.logs.put(groupId, new GroupLog(logCapacity));
+        shard.groups.put(groupId, new Grupo(groupId, groupName));
+        return true;
+    }
+
+    private boolean addMemberInternal(Grupo grupo, String userId, String userName) {
+        if (grupo.isMembro(userId)) {
+            return false;
+        }
+        if (wal != null) {
+            wal.appendMemberAdded(grupo.getId(), userId, userName);
+        }
+        return grupo.adicionarMembro(userId, userName);
+    }
+
+    // o log guarda no máximo logCapacity mensagens; as mais antigas são sobrescritas.
+    // A mensagem vai para o WAL antes do log: se o registo não couber ou o segmento não rodar, a
+    // mensagem falha sem ter sido vista por leitores nem subscritores.
+    private void addMessageInternal(StoreShard shard, Mensagem message) {
+        GroupLog log = shard.logs.get(message.getGroupId());
+        if (wal != null) {
+            message.setSequence(log.nextSequence()); // esta thread é a única que escreve no log
+            wal.appendMessage(message); // só copia para o segmento; o fsync é feito em grupo noutra thread
+        }
+        long sequence = log.append(message);
+        publish(shard, message.getGroupId(), StreamEvent.of("message", String.valueOf(sequence), message));
+    }
+
+    // Escreve as mensagens de um lote destinadas a um grupo: o grupo é procurado uma vez, cada autor
+    // é verificado uma vez e as aceites vão para o WAL de uma só vez. Preenche results nos índices dados.
+    private void addMessagesInternal(StoreShard shard, String groupId, List<Integer> indices, Mensagem[] messages, String[] results) {
+        Grupo grupo = shard.groups.get(groupId);
         if (grupo == null) {
-            return "GROUP_NOT_FOUND";
+            for (int i : indices) results[i] = "GROUP_NOT_FOUND";
+            return;
+        }
+
+        GroupLog log = shard.logs.get(groupId);
+        Map<String, Boolean> authorized = new HashMap<>();
+        List<Integer> accepted = new ArrayList<>(indices.size());
+        List<Mensagem> appended = new ArrayList<>(indices.size());
+        long nextSequence = log.nextSequence();
+        for (int i : indices) {
+            Mensagem message = messages[i];
+            if (!authorized.computeIfAbsent(message.getUserId(), grupo::isMembro)) {
+                results[i] = "USER_NOT_AUTHORIZED";
+                continue;
+            }
+            if (wal != null && !wal.fits(message)) {
+                results[i] = "MESSAGE_TOO_LARGE";
+                continue;
+            }
+            message.setSequence(nextSequence++); // as sequências que o log lhes vai dar, pela mesma ordem
+            accepted.add(i);
+            appended.add(message);
+        }
+
+        // como em addMessageInternal: primeiro o WAL, e só depois as mensagens ficam visíveis. Se o
+        // WAL falhar a meio, só as que lá ficaram escritas são aplicadas; as outras falham sem efeito
+        int written = appended.size();
+        if (wal != null) {
+            try {
+                written = wal.appendMessages(appended);
+            } catch (RuntimeException e) {
+                Log.error("MessageStore", "Falha ao escrever o lote do grupo " + groupId + " no log: " + e.getMessage(), e);
+                written = 0; // nada foi escrito
+            }
+        }
+        for (int k = 0; k < accepted.size(); k++) {
+            int i = accepted.get(k);
+            if (k >= written) {
+                results[i] = "STORAGE_UNAVAILABLE";
+                continue;
+            }
+            log.append(messages[i]);
+            results[i] = "SUCCESS;" + messages[i].getId();
         }
-        if (!grupo.getMembros().contains(message.getUserId())) {
-            return "USER_NOT_AUTHORIZED";
+        for (Mensagem message : appended.subList(0, written)) {
+            publish(shard, groupId, StreamEvent.of("message", String.valueOf(message.getSequence()), message));
         }
-        addMessageInternal(data.getGroupId(), message);
-        return "SUCCESS;" + message.getId();
     }
 
-    private void checkAndClean(String groupId) {
-        LinkedList<Mensagem> log = groupLogs.get(groupId);
-        if (log != null && log.size() > logCapacity) {
-            log.removeFirst();
+    // Entrega o evento a todos os subscritores do grupo. O JSON é gerado uma só vez e cada send só
+    // o põe na fila do subscritor, por isso um cliente lento não atrasa quem escreve nem os outros.
+    private static void publish(StoreShard shard, String groupId, StreamEvent event) {
+        Set<EventSink> sinks = shard.subscribers.get(groupId);
+        if (sinks == null) return;
+        for (EventSink sink : sinks) {
+            sink.send(event);
         }
     }
 
+    // --- rotas ---
+
+    @PostMapping(path = "/addMessage")
+    @CacheEvict(tags = "group:{groupId}")
+    public CompletableFuture<String> addMessage(@RequestBody AddMessageDTO data) {
+        // o id é gerado aqui, na thread do pedido, para a thread do shard só fazer o essencial
+        Mensagem message = new Mensagem(UUID.randomUUID().toString(), data.getUserId(), data.getGroupId(), data.getContent());
+        StoreShard shard = shardFor(data.getGroupId());
+        return shard.submit(() -> {
+            Grupo grupo = shard.groups.get(data.getGroupId());
+            if (grupo == null) {
+                return "GROUP_NOT_FOUND";
+            }
+            if (!grupo.isMembro(message.getUserId())) {
+                return "USER_NOT_AUTHORIZED";
+            }
+            addMessageInternal(shard, message);
+            return "SUCCESS;" + message.getId();
+        });
+    }
+
+    /**
+     * Publica várias mensagens num só pedido. Os itens são separados por shard e por grupo; cada
+     * shard recebe uma única tarefa com todos os seus itens, que escreve grupo a grupo.
+     *
+     * @return um resultado por item, pela ordem do pedido, com os mesmos valores de addMessage,
+     *         "INVALID_MESSAGE_DATA" para itens sem grupo ou autor, "MESSAGE_TOO_LARGE" para itens
+     *         que não cabem no log do disco, e "SERVICE_UNAVAILABLE" (shard sobrecarregado) ou
+     *         "STORAGE_UNAVAILABLE" (falha ao escrever no disco) para itens que não foram guardados
+     *         e podem ser reenviados
+     */
+    @PostMapping(path = "/addMessages")
+    @Batch(maxItems = 1000)
+    @CacheEvict(tags = "group:{groupId}")
+    public CompletableFuture<List<String>> addMessages(@RequestBody List<AddMessageDTO> items) {
+        String[] results = new String[items.size()];
+        Mensagem[] messages = new Mensagem[items.size()];
+        // índices dos itens, por shard e por grupo, pela ordem em que chegaram
+        Map<StoreShard, Map<String, List<Integer>>> byShard = new LinkedHashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            AddMessageDTO item = items.get(i);
+            if (item == null || item.getGroupId() == null || item.getUserId() == null) {
+                results[i] = "INVALID_MESSAGE_DATA";
+                continue;
+            }
+            messages[i] = new Mensagem(UUID.randomUUID().toString(), item.getUserId(), item.getGroupId(), item.getContent());
+            byShard.computeIfAbsent(shardFor(item.getGroupId()), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(item.getGroupId(), k -> new ArrayList<>())
+                    .add(i);
+        }
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>(byShard.size());
+        for (Map.Entry<StoreShard, Map<String, List<Integer>>> entry : byShard.entrySet()) {
+            StoreShard shard = entry.getKey();
+            Map<String, List<Integer>> byGroup = entry.getValue();
+            pending.add(shard.<Void>submit(() -> {
+                byGroup.forEach((groupId, indices) -> addMessagesInternal(shard, groupId, indices, messages, results));
+                return null;
+            }).exceptionally(failure -> {
+                // só a recusa do shard (fila cheia) vira resultado por item; outras falhas falham o pedido
+                if (!(failure instanceof ServiceUnavailableException)) {
+                    throw failure instanceof CompletionException e ? e : new CompletionException(failure);
+                }
+                byGroup.values().forEach(indices -> indices.forEach(i -> results[i] = "SERVICE_UNAVAILABLE"));
+                return null;
+            }));
+        }
+        // os resultados escritos pelas threads dos shards ficam visíveis depois do allOf
+        return CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> List.of(results));
+    }
+
     @GetMapping(path = "/getMessages")
-    public LinkedList<Mensagem> getMessagesForGroup(@RequestBody GroupIdDTO data) {
-        return groupLogs.getOrDefault(data.getGroupId(), new LinkedList<>());
+    @Cacheable(tags = "group:{groupId}")
+    public List<Mensagem> getMessagesForGroup(@RequestBody GroupIdDTO data) {
+        return getGroupMessages(data.getGroupId());
     }
 
-    @PostMapping(path = "/createGroup")
-    public boolean createGroup(@RequestBody CreateGroupDTO data) {
-        if (activeGroups.containsKey(data.getGroupId())) {
-            return false;
+    // o mesmo que getMessages, com o grupo no caminho: GET /messagestore/groups/g1/messages
+    @GetMapping(path = "/groups/{groupId}/messages")
+    @Cacheable(tags = "group:{groupId}")
+    public List<Mensagem> getGroupMessages(@PathVariable("groupId") String groupId) {
+        GroupLog log = shardFor(groupId).logs.get(groupId);
+        return (log != null) ? log.snapshot() : List.of();
+    }
+
+    /**
+     * Mensagens do grupo posteriores a {@code cursor}. Sem mensagens novas e com {@code timeoutMs > 0},
+     * o pedido fica pendente até chegar uma mensagem ou o tempo acabar (long-polling), sem ocupar
+     * nenhuma thread enquanto espera.
+     */
+    @GetMapping(path = "/getMessagesSince")
+    public CompletableFuture<MessagesSinceDTO> getMessagesSince(@RequestBody MessagesSinceRequestDTO data) {
+        return getGroupMessagesSince(data.getGroupId(), data.getCursor(), data.getTimeoutMs());
+    }
+
+    // o mesmo que getMessagesSince, sem corpo: GET /messagestore/groups/g1/messages/since?cursor=41&timeoutMs=30000
+    @GetMapping(path = "/groups/{groupId}/messages/since")
+    public CompletableFuture<MessagesSinceDTO> getGroupMessagesSince(@PathVariable("groupId") String groupId,
+                                                                     @QueryParam(value = "cursor", required = false) Long cursor,
+                                                                     @QueryParam(value = "timeoutMs", required = false) Long timeoutMs) {
+        long after = cursor != null ? Math.max(-1, cursor) : -1;
+        long wait = timeoutMs != null ? timeoutMs : 0;
+        GroupLog log = shardFor(groupId).logs.get(groupId);
+        if (log == null) {
+            return CompletableFuture.completedFuture(new MessagesSinceDTO(List.of(), after, false));
         }
-        activeGroups.put(data.getGroupId(), new Grupo(data.getGroupId(), data.getGroupName()));
-        Log.info("MessageStore", "Grupo criado: %s", data.getGroupId());
-        return true;
+
+        MessagesSinceDTO available = messagesSince(log, after);
+        if (!available.getMessages().isEmpty() || wait <= 0) {
+            return CompletableFuture.completedFuture(available);
+        }
+
+        // a resposta é montada fora da thread que publicou a mensagem, para não atrasar quem escreve
+        return log.awaitAfter(after)
+                .completeOnTimeout(null, Math.min(wait, MAX_LONG_POLL_MS), TimeUnit.MILLISECONDS)
+                .thenApplyAsync(ignored -> messagesSince(log, after));
+    }
+
+    private static MessagesSinceDTO messagesSince(GroupLog log, long cursor) {
+        List<Mensagem> messages = log.since(cursor);
+        if (messages.isEmpty()) {
+            return new MessagesSinceDTO(messages, cursor, false);
+        }
+        long first = messages.get(0).getSequence();
+        long last = messages.get(messages.size() - 1).getSequence();
+        // sem cursor o cliente pede tudo o que existe, que num log recuperado começa na primeira sequência reposta
+        long expected = cursor < 0 ? log.firstSequence() : cursor + 1;
+        return new MessagesSinceDTO(messages, last, first > expected);
+    }
+
+    /**
+     * Stream (Server-Sent Events) com as mensagens novas do grupo, à medida que são adicionadas.
+     * O id de cada evento é a sequência da mensagem, o mesmo cursor de getMessagesSince.
+     */
+    @GetMapping(path = "/subscribe")
+    @EventStream(queueCapacity = 256, overflow = OverflowPolicy.DISCONNECT)
+    public void subscribe(@RequestBody GroupIdDTO data, EventSink sink) {
+        StoreShard shard = shardFor(data.getGroupId());
+        if (!shard.groups.containsKey(data.getGroupId())) {
+            sink.send(StreamEvent.of("error", null, "GROUP_NOT_FOUND"));
+            sink.close();
+            return;
+        }
+
+        Set<EventSink> sinks = shard.subscribers.computeIfAbsent(data.getGroupId(), k -> ConcurrentHashMap.newKeySet());
+        sinks.add(sink);
+        sink.onClose(() -> sinks.remove(sink));
+        Log.info("MessageStore", "Novo subscritor do grupo %s (%d no total).", data.getGroupId(), sinks.size());
+    }
+
+    @PostMapping(path = "/createGroup")
+    @CacheEvict(tags = "group:{groupId}")
+    public CompletableFuture<Boolean> createGroup(@RequestBody CreateGroupDTO data) {
+        StoreShard shard = shardFor(data.getGroupId());
+        return shard.submit(() -> {
+            if (!createGroupInternal(shard, data.getGroupId(), data.getGroupName())) {
+                return false;
+            }
+            Log.info("MessageStore", "Grupo criado: %s", data.getGroupId());
+            return true;
+        });
     }
 
     @GetMapping(path = "/groupExists")
+    @Cacheable(tags = "group:{groupId}")
     public boolean groupExists(@RequestBody GroupIdDTO data) {
-        return activeGroups.containsKey(data.getGroupId());
+        return shardFor(data.getGroupId()).groups.containsKey(data.getGroupId());
     }
 
     @PostMapping(path = "/addMember")
-    public String adicionarMembro(@RequestBody AddMemberDTO data) {
-        Grupo grupo = activeGroups.get(data.getGroupId());
-        if (grupo == null) return "GROUP_NOT_FOUND";
-        if (data.getUserId() == null || data.getUserId().trim().isEmpty() || data.getUserName() == null || data.getUserName().trim().isEmpty()) return "INVALID_MEMBER_DATA";
-        return grupo.adicionarMembro(data.getUserId(), data.getUserName()) ? "SUCCESS" : "MEMBER_ALREADY_EXISTS";
+    @CacheEvict(tags = "group:{groupId}")
+    public CompletableFuture<String> adicionarMembro(@RequestBody AddMemberDTO data) {
+        if (data.getUserId() == null || data.getUserId().trim().isEmpty() || data.getUserName() == null || data.getUserName().trim().isEmpty()) {
+            return CompletableFuture.completedFuture(shardFor(data.getGroupId()).groups.containsKey(data.getGroupId()) ? "INVALID_MEMBER_DATA" : "GROUP_NOT_FOUND");
+        }
+        StoreShard shard = shardFor(data.getGroupId());
+        return shard.submit(() -> {
+            Grupo grupo = shard.groups.get(data.getGroupId());
+            if (grupo == null) return "GROUP_NOT_FOUND";
+            return addMemberInternal(grupo, data.getUserId(), data.getUserName()) ? "SUCCESS" : "MEMBER_ALREADY_EXISTS";
+        });
     }
 
     @GetMapping(path = "/getMembers")
+    @Cacheable(tags = "group:{groupId}")
     public Set<String> getMembros(@RequestBody GroupIdDTO data) {
-        Grupo grupo = activeGroups.get(data.getGroupId());
+        return getGroupMembers(data.getGroupId());
+    }
+
+    @GetMapping(path = "/groups/{groupId}/members")
+    @Cacheable(tags = "group:{groupId}")
+    public Set<String> getGroupMembers(@PathVariable("groupId") String groupId) {
+        Grupo grupo = shardFor(groupId).groups.get(groupId);
         return (grupo != null) ? grupo.getMembros() : Set.of();
     }
 
     public boolean isMember(String groupId, String userId) {
-        Grupo grupo = activeGroups.get(groupId);
-        return (grupo != null) && grupo.getMembros().contains(userId);
+        Grupo grupo = shardFor(groupId).groups.get(groupId);
+        return (grupo != null) && grupo.isMembro(userId);
     }
 
 }
@@ -0,0 +1,77 @@
+package application.services;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import application.entity.Grupo;
+import middleware.exceptions.ServiceUnavailableException;
+import middleware.streaming.EventSink;
+
+/**
+ * Uma partição do MessageStore: os grupos cujo id cai neste shard, com os seus logs e subscritores.
+ *
+ * Todas as alterações correm na thread única do shard (um único escritor por grupo), por isso não há
+ * locks nem contenção entre escritores; shards diferentes escrevem em paralelo. As leituras não
+ * passam pela thread: os mapas são concorrentes e o GroupLog lê-se sem bloquear.
+ */
+final class StoreShard {
+
+    // segundos sugeridos no Retry-After quando a fila do shard está cheia
+    private static final int RETRY_AFTER_SECONDS = 1;
+
+    final Map<String, Grupo> groups = new ConcurrentHashMap<>();
+    final Map<String, GroupLog> logs = new ConcurrentHashMap<>();
+    // clientes ligados a /subscribe, por grupo
+    final Map<String, Set<EventSink>> subscribers = new ConcurrentHashMap<>();
+
+    private final int index;
+    private final ThreadPoolExecutor writer;
+    // tomado pela thread do shard durante cada alteração (WAL e memória); ver awaitApplied
+    private final Object applyLock = new Object();
+
+    StoreShard(int index, int queueCapacity) {
+        this.index = index;
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "messagestore-shard-" + index);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Corre a alteração na thread do shard. Com a fila cheia falha logo com
+     * ServiceUnavailableException (503), em vez de acumular trabalho sem limite.
+     */
+    <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                synchronized (applyLock) {
+                    return task.get();
+                }
+            }, writer);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new ServiceUnavailableException(
+                    "Shard " + index + " do MessageStore sobrecarregado.", RETRY_AFTER_SECONDS));
+        }
+    }
+
+    /**
+     * Espera que termine a alteração em curso, se houver. Uma alteração vai para o WAL antes de ser
+     * aplicada em memória; depois desta chamada, tudo o que o shard já escreveu no WAL está aplicado.
+     */
+    void awaitApplied() {
+        synchronized (applyLock) {
+            // só a barreira: a alteração em curso já terminou
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import middleware.component_model.remoting.HttpRequest;
+import middleware.component_model.remoting.HttpRequestParser;
+import middleware.exceptions.BadRequestException;
+
+/**
+ * Parser orientado a bytes (HttpRequestParser) contra a leitura antiga do ServerRequestHandler:
+ * BufferedReader sobre InputStreamReader, toLowerCase/split em cada header e o corpo num char[].
+ * O pedido é um addMessage típico, com um carácter de 2 bytes no corpo.
+ *
+ * Com {@code -prof gc}, o gc.alloc.rate.norm mostra os bytes alocados por pedido:
+ * java -jar target/benchmarks.jar HttpRequestParser -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dmiddleware.log.level=WARN")
+@State(Scope.Thread)
+public class HttpRequestParserBenchmark {
+
+    private static final String BODY = "{\"groupId\":\"grupo-123\",\"userId\":\"user-Alice\",\"content\":\"Olá, pessoal! Reunião às 15h.\"}";
+
+    private byte[] request;
+    private HttpRequestParser parser;
+
+    @Setup
+    public void setup() {
+        byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+        String head = "POST /messagestore/addMessage HTTP/1.1\r\n"
+                + "Host: localhost:8080\r\n"
+                + "User-Agent: benchmark/1.0\r\n"
+                + "Accept: application/json\r\n"
+                + "Content-Type: application/json; charset=UTF-8\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: keep-alive\r\n"
+                + "\r\n";
+        byte[] headBytes = head.getBytes(StandardCharsets.US_ASCII);
+        request = new byte[headBytes.length + body.length];
+        System.arraycopy(headBytes, 0, request, 0, headBytes.length);
+        System.arraycopy(body, 0, request, headBytes.length, body.length);
+        parser = new HttpRequestParser(8 * 1024, 1024 * 1024);
+    }
+
+    // o mesmo parser serve todos os pedidos da conexão, como nos transportes
+    @Benchmark
+    public void byteParser(Blackhole bh) throws BadRequestException {
+        parser.feed(request, 0, request.length);
+        HttpRequest parsed = parser.next();
+        bh.consume(parsed.getHttpMethod());
+        bh.consume(parsed.getPath());
+        bh.consume(parsed.isKeepAlive());
+        bh.consume(parsed.getBodyBuffer());
+        bh.consume(parsed.getBodyOffset());
+        bh.consume(parsed.getBodyLength());
+    }
+
+    // a leitura de antes, tal como estava em handleClient, até o corpo chegar ao Invoker como String
+    @Benchmark
+    public void readerParser(Blackhole bh) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(request), StandardCharsets.UTF_8));
+        String requestLine = reader.readLine();
+        String[] parts = requestLine.split(" ");
+        String httpMethod = parts[0];
+        String path = parts[1];
+
+        String headerLine;
+        int contentLength = 0;
+        while ((headerLine = reader.readLine()) != null && !headerLine.isEmpty()) {
+            if (headerLine.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(headerLine.split(":")[1].trim());
+            }
+        }
+
+        String requestBody = "";
+        if (contentLength > 0) {
+            char[] bodyChars = new char[contentLength];
+            int read = reader.read(bodyChars, 0, contentLength);
+            requestBody = new String(bodyChars, 0, read);
+        }
+        bh.consume(httpMethod);
+        bh.consume(path);
+        bh.consume(requestBody);
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import application.dto.AddMessageDTO;
+import application.dto.GroupIdDTO;
+import application.services.MessageFormatter;
+import application.services.MessageStore;
+import middleware.component_model.identification.AbsoluteObjectReference;
+import middleware.lifecycle.annotations.LifecyclePolicyType;
+
+/**
+ * Chamada ao método remoto pelo MethodHandle pré-compilado na AbsoluteObjectReference (o que o
+ * Invoker faz) contra Method.invoke (o que fazia antes), para MessageStore.addMessage e
+ * MessageFormatter.format. O addMessage espera pelo resultado do shard, como um pedido real.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dmiddleware.log.level=WARN")
+@State(Scope.Thread)
+public class InvocationBenchmark {
+
+    private MessageStore store;
+    private MessageFormatter formatter;
+
+    private Method addMessage;
+    private Method format;
+    private AbsoluteObjectReference addMessageRoute;
+    private AbsoluteObjectReference formatRoute;
+
+    private Object[] addMessageArgs;
+    private Object[] formatArgs;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        // um só shard: a mensagem de exemplo e as novas ficam todas no mesmo log
+        store = new MessageStore(64, 1);
+        formatter = new MessageFormatter(store);
+
+        addMessage = MessageStore.class.getMethod("addMessage", AddMessageDTO.class);
+        format = MessageFormatter.class.getMethod("format", GroupIdDTO.class);
+        addMessageRoute = new AbsoluteObjectReference("/messagestore", MessageStore.class, addMessage, LifecyclePolicyType.STATIC_INSTANCE);
+        formatRoute = new AbsoluteObjectReference("/formatter", MessageFormatter.class, format, LifecyclePolicyType.PER_REQUEST);
+
+        AddMessageDTO message = new AddMessageDTO();
+        message.setGroupId("grupo-123");
+        message.setUserId("user-Alice");
+        message.setContent("Olá!");
+        addMessageArgs = new Object[] { message };
+
+        GroupIdDTO group = new GroupIdDTO();
+        group.setGroupId("grupo-123");
+        formatArgs = new Object[] { group };
+    }
+
+    @Benchmark
+    public Object addMessageMethodHandle() throws Throwable {
+        Object result = (Object) addMessageRoute.getMethodHandle().invokeExact((Object) store, addMessageArgs);
+        return ((CompletableFuture<?>) result).join();
+    }
+
+    @Benchmark
+    public Object addMessageReflective() throws Exception {
+        return ((CompletableFuture<?>) addMessage.invoke(store, addMessageArgs)).join();
+    }
+
+    @Benchmark
+    public Object formatMethodHandle() throws Throwable {
+        return (Object) formatRoute.getMethodHandle().invokeExact((Object) formatter, formatArgs);
+    }
+
+    @Benchmark
+    public Object formatReflective() throws Exception {
+        return format.invoke(formatter, formatArgs);
+    }
+}
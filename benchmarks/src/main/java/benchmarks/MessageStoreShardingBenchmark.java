@@ -0,0 +1,90 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import application.dto.AddMemberDTO;
+import application.dto.AddMessageDTO;
+import application.dto.CreateGroupDTO;
+import application.services.MessageStore;
+
+/**
+ * Débito de addMessage com o tráfego espalhado por muitos grupos, para vários números de shards.
+ * Com shards=1 todas as escritas passam por uma só thread, como um store sem partições; a curva
+ * do score ao longo de {@code shards} mostra quanto o particionamento escala nesta máquina.
+ * Para variar também os clientes: java -jar target/benchmarks.jar MessageStoreSharding -t 8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dmiddleware.log.level=WARN")
+@Threads(Threads.MAX)
+public class MessageStoreShardingBenchmark {
+
+    private static final int GROUPS = 1024;
+
+    @State(Scope.Benchmark)
+    public static class Store {
+        @Param({ "1", "2", "4", "8", "16" })
+        public int shards;
+
+        MessageStore store;
+        AddMessageDTO[] messages;
+
+        @Setup
+        public void setup() {
+            store = new MessageStore(256, shards);
+            messages = new AddMessageDTO[GROUPS];
+            for (int i = 0; i < GROUPS; i++) {
+                String groupId = "grupo-" + i;
+                CreateGroupDTO group = new CreateGroupDTO();
+                group.setGroupId(groupId);
+                group.setGroupName("Grupo " + i);
+                store.createGroup(group).join();
+
+                AddMemberDTO member = new AddMemberDTO();
+                member.setGroupId(groupId);
+                member.setUserId("user-" + i);
+                member.setUserName("User " + i);
+                store.adicionarMembro(member).join();
+
+                AddMessageDTO message = new AddMessageDTO();
+                message.setGroupId(groupId);
+                message.setUserId("user-" + i);
+                message.setContent("mensagem de teste");
+                messages[i] = message;
+            }
+        }
+    }
+
+    // cada cliente percorre os grupos a partir de um ponto diferente
+    @State(Scope.Thread)
+    public static class Client {
+        int next;
+
+        @Setup
+        public void setup() {
+            next = (int) (Thread.currentThread().threadId() * 7919 % GROUPS);
+        }
+    }
+
+    @Benchmark
+    public String addMessage(Store store, Client client) {
+        AddMessageDTO message = store.messages[client.next];
+        client.next = (client.next + 1) % GROUPS;
+        return store.store.addMessage(message).join();
+    }
+}
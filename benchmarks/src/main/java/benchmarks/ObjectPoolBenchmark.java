@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import middleware.lifecycle.pooling.ObjectPool;
+
+/**
+ * Borrow seguido de return no ObjectPool com stripes por thread ({@code pool=striped}) contra a
+ * pilha partilhada de antes ({@code pool=shared}), com 1, 8, 32 e 64 threads. maxSize chega para
+ * todas as threads, por isso no modo limitado nenhum borrow espera: mede-se só a contenção.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dmiddleware.log.level=WARN")
+@State(Scope.Benchmark)
+public class ObjectPoolBenchmark {
+
+    private static final int MAX_SIZE = 128;
+
+    @Param({ "striped", "shared" })
+    public String pool;
+
+    @Param({ "elastic", "bounded" })
+    public String mode;
+
+    private ObjectPool<Object> striped;
+    private SharedDequeObjectPool<Object> shared;
+
+    @Setup
+    public void setup() {
+        long borrowTimeoutMs = mode.equals("bounded") ? 1000 : -1;
+        if (pool.equals("striped")) {
+            striped = new ObjectPool<>(MAX_SIZE / 2, MAX_SIZE, borrowTimeoutMs, 0, Object::new, null, null);
+        } else {
+            shared = new SharedDequeObjectPool<>(MAX_SIZE / 2, MAX_SIZE, borrowTimeoutMs, Object::new);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (striped != null) striped.close();
+    }
+
+    private Object cycle() {
+        if (striped != null) {
+            Object object = striped.borrowObject();
+            striped.returnObject(object);
+            return object;
+        }
+        Object object = shared.borrowObject();
+        shared.returnObject(object);
+        return object;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads1() {
+        return cycle();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object threads8() {
+        return cycle();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Object threads32() {
+        return cycle();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object threads64() {
+        return cycle();
+    }
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import middleware.exceptions.PoolExhaustedException;
+
+/**
+ * O ObjectPool de antes das stripes por thread: uma só pilha partilhada, com o semáforo do modo
+ * limitado e os mesmos contadores. Só o borrow e o return, que é o que o benchmark compara; o
+ * sweeper, a validação e o reset não entram (no benchmark são nulos nos dois pools).
+ */
+final class SharedDequeObjectPool<T> {
+
+    private record Idle<T>(T object, long returnedAtNanos) {}
+
+    private final ConcurrentLinkedDeque<Idle<T>> idle = new ConcurrentLinkedDeque<>();
+    private final Supplier<T> objectFactory;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+    private final Semaphore permits; // só no modo limitado
+
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger totalCount = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    SharedDequeObjectPool(int minIdle, int maxSize, long borrowTimeoutMs, Supplier<T> objectFactory) {
+        this.objectFactory = objectFactory;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.permits = borrowTimeoutMs >= 0 ? new Semaphore(maxSize, true) : null;
+        for (int i = 0; i < minIdle; i++) {
+            totalCount.incrementAndGet();
+            idleCount.incrementAndGet();
+            idle.offerLast(new Idle<>(objectFactory.get(), System.nanoTime()));
+        }
+    }
+
+    T borrowObject() {
+        if (permits != null) {
+            acquirePermit();
+        }
+        borrows.increment();
+        Idle<T> entry = idle.pollFirst();
+        if (entry != null) {
+            idleCount.decrementAndGet();
+            return entry.object();
+        }
+        misses.increment();
+        totalCount.incrementAndGet();
+        return objectFactory.get();
+    }
+
+    private void acquirePermit() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throw new PoolExhaustedException("Todas as " + maxSize + " instâncias do pool estão em uso.");
+        }
+    }
+
+    void returnObject(T object) {
+        try {
+            if (idleCount.incrementAndGet() <= maxSize) {
+                idle.offerFirst(new Idle<>(object, System.nanoTime()));
+            } else {
+                idleCount.decrementAndGet();
+                totalCount.decrementAndGet();
+            }
+        } finally {
+            if (permits != null) permits.release();
+        }
+    }
+}
@@ -1,35 +1,117 @@
 package middleware;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import middleware.admission.AimdLimit;
+import middleware.admission.ConcurrencyLimiter;
+import middleware.caching.ResponseCache;
 import middleware.component_model.ComponentScanner;
 import middleware.component_model.identification.Lookup;
+import middleware.component_model.remoting.ExecutionMode;
 import middleware.component_model.remoting.Invoker;
+import middleware.component_model.remoting.NioServerRequestHandler;
+import middleware.component_model.remoting.RequestDispatcher;
 import middleware.component_model.remoting.ServerRequestHandler;
+import middleware.component_model.remoting.ServerTransport;
+import middleware.component_model.remoting.TransportType;
 import middleware.extension.InvocationInterceptor;
 import middleware.lifecycle.LifecycleManager;
+import middleware.metrics.MetricsRegistry;
 import middleware.util.Log;
+import middleware.util.PinningMonitor;
 
 public class Middleware {
 
-    private final ServerRequestHandler server;
+    private final ServerTransport server;
     private final ComponentScanner scanner;
     private final LifecycleManager lifecycleManager;
     private final Invoker invoker;
+    private final PinningMonitor pinningMonitor;
+    private final MetricsRegistry metrics; // nulo com as métricas desligadas
+    private final ResponseCache responseCache; // nulo com o cache desligado
+    private final ExecutorService multiInvokePool; // só quando o Middleware cria o executor de multi-invoke
+    private final boolean warmupOnStart;
 
     public Middleware(int port) {
+        this(port, new MiddlewareConfig());
+    }
+
+    public Middleware(int port, MiddlewareConfig config) {
 
         Log.info("Middleware", "Inicializando Middleware...");
 
-        this.lifecycleManager = new LifecycleManager();
+        this.metrics = config.isMetricsEnabled() ? new MetricsRegistry() : null;
+        this.lifecycleManager = new LifecycleManager(metrics, config.getRetryAfterSeconds());
+        this.warmupOnStart = config.isWarmupOnStart();
+
+        // no modo adaptativo maxInFlight passa a ser o teto do limite ajustado
+        AimdLimit adaptive = config.isAdaptiveLimit()
+                ? new AimdLimit(config.getAdaptiveTargetLatencyMs(), Math.min(config.getAdaptiveMinLimit(), config.getMaxInFlight()), config.getMaxInFlight(), 0.9)
+                : null;
+        ConcurrencyLimiter admissionLimiter = new ConcurrencyLimiter("global", config.getMaxInFlight(),
+                config.getAdmissionQueueSize(), config.getAdmissionQueueTimeoutMs(), config.getRetryAfterSeconds(), adaptive);
+
+        this.responseCache = config.getResponseCacheMaxEntries() > 0 ? new ResponseCache(config.getResponseCacheMaxEntries()) : null;
+        if (responseCache != null && metrics != null) {
+            responseCache.registerMetrics(metrics);
+        }
 
         Lookup lookup = new Lookup();
-        this.invoker = new Invoker(lookup, lifecycleManager);
+        this.invoker = new Invoker(lookup, lifecycleManager, admissionLimiter, responseCache);
+
+        if (metrics != null) {
+            metrics.registerGauge("middleware_admission_limit", "Limite atual de invocações em simultâneo.", admissionLimiter::getLimit);
+            metrics.registerGauge("middleware_admission_in_flight", "Invocações admitidas em curso.", admissionLimiter::getInFlight);
+            metrics.registerGauge("middleware_admission_waiting", "Pedidos à espera de admissão.", admissionLimiter::getWaiting);
+        }
+
+        this.scanner = new ComponentScanner(lookup, lifecycleManager, invoker.getMarshaller(), metrics, config.getRetryAfterSeconds());
+
+        Executor multiInvokeExecutor = config.getMultiInvokeExecutor();
+        this.multiInvokePool = multiInvokeExecutor == null && config.getMultiInvokePath() != null
+                ? createMultiInvokePool(config)
+                : null;
+        if (multiInvokeExecutor == null) {
+            multiInvokeExecutor = multiInvokePool;
+        }
+
+        RequestDispatcher dispatcher = new RequestDispatcher(invoker, metrics, config.getMetricsPath(),
+                config.getMultiInvokePath(), config.getMaxMultiInvokeCalls(), multiInvokeExecutor);
+        this.server = config.getTransport() == TransportType.NIO
+                ? new NioServerRequestHandler(dispatcher, metrics, port, config)
+                : new ServerRequestHandler(dispatcher, metrics, port, config);
 
-        this.scanner = new ComponentScanner(lookup, lifecycleManager);
-        this.server = new ServerRequestHandler(invoker, port);
+        this.pinningMonitor = config.getExecutionMode() == ExecutionMode.VIRTUAL && config.isPinningDiagnostics()
+                ? new PinningMonitor(config.getPinningThresholdMs())
+                : null;
 
         Log.info("Middleware", "Componentes do Middleware inicializados.");
     }
 
+    // com a fila cheia a chamada corre na thread do próprio pedido (ver RequestDispatcher)
+    private static ExecutorService createMultiInvokePool(MiddlewareConfig config) {
+        if (config.getExecutionMode() == ExecutionMode.VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("multi-invoke-", 0).factory());
+        }
+        AtomicInteger threadIds = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                config.getWorkerThreads(), config.getWorkerThreads(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getWorkerQueueCapacity()),
+                task -> {
+                    Thread thread = new Thread(task, "multi-invoke-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
     public void addInterceptor(InvocationInterceptor interceptor) {
         if (interceptor == null) return;
 
@@ -50,12 +132,35 @@ public class Middleware {
         }
     }
 
+    // nulo se as métricas estiverem desligadas na configuração
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    // nulo se o cache de respostas estiver desligado na configuração
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
     public void start() {
+        // os componentes já estão registados: o primeiro pedido não paga a construção
+        if (warmupOnStart) {
+            lifecycleManager.warmUp();
+        }
+        if (pinningMonitor != null) {
+            pinningMonitor.start();
+        }
         server.start();
     }
 
     public void stop() {
         server.stop();
+        if (pinningMonitor != null) {
+            pinningMonitor.close();
+        }
+        if (multiInvokePool != null) {
+            multiInvokePool.shutdown();
+        }
         if (lifecycleManager != null) {
             lifecycleManager.shutdownPools();
         }
@@ -0,0 +1,271 @@
+package middleware;
+
+import java.util.concurrent.Executor;
+
+import middleware.component_model.remoting.ExecutionMode;
+import middleware.component_model.remoting.TransportType;
+
+/**
+ * Parâmetros de configuração do Middleware.
+ * Todos os valores têm padrões razoáveis; basta alterar os necessários antes de construir o Middleware.
+ */
+public class MiddlewareConfig {
+
+    private TransportType transport = TransportType.BLOCKING;
+
+    // tempo máximo (ms) que uma conexão persistente pode ficar ociosa à espera do próximo pedido
+    private int keepAliveTimeoutMs = 15_000;
+
+    // número máximo de pedidos atendidos numa mesma conexão antes de fechá-la
+    private int maxRequestsPerConnection = 1_000;
+
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+    // --- modo VIRTUAL ---
+
+    // máximo de virtual threads em simultâneo (conexões no transporte bloqueante, invocações no NIO)
+    private int maxConcurrentTasks = 10_000;
+
+    // reporta virtual threads presas à carrier por mais de pinningThresholdMs
+    private boolean pinningDiagnostics = true;
+    private long pinningThresholdMs = 20;
+
+    // --- controlo de admissão ---
+
+    // máximo de invocações em curso e de pedidos à espera de vaga; além disso o pedido recebe 503
+    private int maxInFlight = 1_024;
+    private int admissionQueueSize = 1_024;
+    private long admissionQueueTimeoutMs = 1_000;
+
+    // valor do header Retry-After nas respostas 503
+    private int retryAfterSeconds = 1;
+
+    // ajusta maxInFlight (AIMD) pela latência observada no Invoker
+    private boolean adaptiveLimit = false;
+    private long adaptiveTargetLatencyMs = 50;
+    private int adaptiveMinLimit = 8;
+
+    // --- transporte NIO ---
+
+    // número de event loops (threads com Selector)
+    private int ioThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    // threads e fila do pool que executa as invocações (ignorados no modo VIRTUAL)
+    private int workerThreads = 4 * Math.max(1, Runtime.getRuntime().availableProcessors());
+    private int workerQueueCapacity = 1_024;
+
+    // --- pedidos e respostas (ambos os transportes) ---
+
+    // tamanho do buffer de leitura de cada conexão (ByteBuffer direto no NIO)
+    private int readBufferSize = 16 * 1024;
+
+    // limites de um pedido; acima deles o pedido é recusado com 400
+    private int maxHeaderSize = 8 * 1024;
+    private int maxBodySize = 1024 * 1024;
+
+    // respostas maiores que isto saem com Transfer-Encoding: chunked (só no transporte bloqueante)
+    private int chunkedResponseThreshold = 64 * 1024;
+
+    // --- métricas ---
+
+    // latência e respostas por rota, servidas em formato Prometheus em GET metricsPath
+    private boolean metricsEnabled = true;
+    private String metricsPath = "/metrics";
+
+    // --- cache de respostas ---
+
+    // entradas no cache das rotas @Cacheable; 0 desliga o cache
+    private int responseCacheMaxEntries = 10_000;
+
+    // --- ciclo de vida ---
+
+    // no start() cria os LAZY_SINGLETONs, os pools @Pooled e os planos de instanciação antes do primeiro pedido
+    private boolean warmupOnStart = true;
+
+    // --- multi-invoke ---
+
+    // um POST neste caminho leva várias chamadas num só envelope; null desliga
+    private String multiInvokePath = "/_multi";
+    private int maxMultiInvokeCalls = 32;
+
+    // onde correm as chamadas de um envelope em modo paralelo; null: pool próprio do Middleware
+    // (virtual threads no modo VIRTUAL)
+    private Executor multiInvokeExecutor;
+
+    public TransportType getTransport() { return transport; }
+    public void setTransport(TransportType transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("transport não pode ser nulo.");
+        }
+        this.transport = transport;
+    }
+
+    public ExecutionMode getExecutionMode() { return executionMode; }
+    public void setExecutionMode(ExecutionMode executionMode) {
+        if (executionMode == null) {
+            throw new IllegalArgumentException("executionMode não pode ser nulo.");
+        }
+        this.executionMode = executionMode;
+    }
+
+    public int getMaxConcurrentTasks() { return maxConcurrentTasks; }
+    public void setMaxConcurrentTasks(int maxConcurrentTasks) {
+        requirePositive(maxConcurrentTasks, "maxConcurrentTasks");
+        this.maxConcurrentTasks = maxConcurrentTasks;
+    }
+
+    public boolean isPinningDiagnostics() { return pinningDiagnostics; }
+    public void setPinningDiagnostics(boolean pinningDiagnostics) { this.pinningDiagnostics = pinningDiagnostics; }
+
+    public long getPinningThresholdMs() { return pinningThresholdMs; }
+    public void setPinningThresholdMs(long pinningThresholdMs) {
+        if (pinningThresholdMs < 0) {
+            throw new IllegalArgumentException("pinningThresholdMs não pode ser negativo.");
+        }
+        this.pinningThresholdMs = pinningThresholdMs;
+    }
+
+    public int getKeepAliveTimeoutMs() { return keepAliveTimeoutMs; }
+    public void setKeepAliveTimeoutMs(int keepAliveTimeoutMs) {
+        requirePositive(keepAliveTimeoutMs, "keepAliveTimeoutMs");
+        this.keepAliveTimeoutMs = keepAliveTimeoutMs;
+    }
+
+    public int getMaxRequestsPerConnection() { return maxRequestsPerConnection; }
+    public void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+        requirePositive(maxRequestsPerConnection, "maxRequestsPerConnection");
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
+    public int getMaxInFlight() { return maxInFlight; }
+    public void setMaxInFlight(int maxInFlight) {
+        requirePositive(maxInFlight, "maxInFlight");
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getAdmissionQueueSize() { return admissionQueueSize; }
+    public void setAdmissionQueueSize(int admissionQueueSize) {
+        if (admissionQueueSize < 0) {
+            throw new IllegalArgumentException("admissionQueueSize não pode ser negativo.");
+        }
+        this.admissionQueueSize = admissionQueueSize;
+    }
+
+    public long getAdmissionQueueTimeoutMs() { return admissionQueueTimeoutMs; }
+    public void setAdmissionQueueTimeoutMs(long admissionQueueTimeoutMs) {
+        if (admissionQueueTimeoutMs < 0) {
+            throw new IllegalArgumentException("admissionQueueTimeoutMs não pode ser negativo.");
+        }
+        this.admissionQueueTimeoutMs = admissionQueueTimeoutMs;
+    }
+
+    public int getRetryAfterSeconds() { return retryAfterSeconds; }
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        requirePositive(retryAfterSeconds, "retryAfterSeconds");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public boolean isAdaptiveLimit() { return adaptiveLimit; }
+    public void setAdaptiveLimit(boolean adaptiveLimit) { this.adaptiveLimit = adaptiveLimit; }
+
+    public long getAdaptiveTargetLatencyMs() { return adaptiveTargetLatencyMs; }
+    public void setAdaptiveTargetLatencyMs(long adaptiveTargetLatencyMs) {
+        if (adaptiveTargetLatencyMs <= 0) {
+            throw new IllegalArgumentException("adaptiveTargetLatencyMs deve ser positivo.");
+        }
+        this.adaptiveTargetLatencyMs = adaptiveTargetLatencyMs;
+    }
+
+    public int getAdaptiveMinLimit() { return adaptiveMinLimit; }
+    public void setAdaptiveMinLimit(int adaptiveMinLimit) {
+        requirePositive(adaptiveMinLimit, "adaptiveMinLimit");
+        this.adaptiveMinLimit = adaptiveMinLimit;
+    }
+
+    public int getIoThreads() { return ioThreads; }
+    public void setIoThreads(int ioThreads) {
+        requirePositive(ioThreads, "ioThreads");
+        this.ioThreads = ioThreads;
+    }
+
+    public int getWorkerThreads() { return workerThreads; }
+    public void setWorkerThreads(int workerThreads) {
+        requirePositive(workerThreads, "workerThreads");
+        this.workerThreads = workerThreads;
+    }
+
+    public int getWorkerQueueCapacity() { return workerQueueCapacity; }
+    public void setWorkerQueueCapacity(int workerQueueCapacity) {
+        requirePositive(workerQueueCapacity, "workerQueueCapacity");
+        this.workerQueueCapacity = workerQueueCapacity;
+    }
+
+    public int getReadBufferSize() { return readBufferSize; }
+    public void setReadBufferSize(int readBufferSize) {
+        requirePositive(readBufferSize, "readBufferSize");
+        this.readBufferSize = readBufferSize;
+    }
+
+    public int getMaxHeaderSize() { return maxHeaderSize; }
+    public void setMaxHeaderSize(int maxHeaderSize) {
+        requirePositive(maxHeaderSize, "maxHeaderSize");
+        this.maxHeaderSize = maxHeaderSize;
+    }
+
+    public int getMaxBodySize() { return maxBodySize; }
+    public void setMaxBodySize(int maxBodySize) {
+        requirePositive(maxBodySize, "maxBodySize");
+        this.maxBodySize = maxBodySize;
+    }
+
+    public int getChunkedResponseThreshold() { return chunkedResponseThreshold; }
+    public void setChunkedResponseThreshold(int chunkedResponseThreshold) {
+        requirePositive(chunkedResponseThreshold, "chunkedResponseThreshold");
+        this.chunkedResponseThreshold = chunkedResponseThreshold;
+    }
+
+    public boolean isMetricsEnabled() { return metricsEnabled; }
+    public void setMetricsEnabled(boolean metricsEnabled) { this.metricsEnabled = metricsEnabled; }
+
+    public String getMetricsPath() { return metricsPath; }
+    public void setMetricsPath(String metricsPath) {
+        if (metricsPath == null || !metricsPath.startsWith("/")) {
+            throw new IllegalArgumentException("metricsPath deve começar por '/'.");
+        }
+        this.metricsPath = metricsPath;
+    }
+
+    public int getResponseCacheMaxEntries() { return responseCacheMaxEntries; }
+    public void setResponseCacheMaxEntries(int responseCacheMaxEntries) {
+        if (responseCacheMaxEntries < 0) {
+            throw new IllegalArgumentException("responseCacheMaxEntries não pode ser negativo.");
+        }
+        this.responseCacheMaxEntries = responseCacheMaxEntries;
+    }
+
+    public boolean isWarmupOnStart() { return warmupOnStart; }
+    public void setWarmupOnStart(boolean warmupOnStart) { this.warmupOnStart = warmupOnStart; }
+
+    public String getMultiInvokePath() { return multiInvokePath; }
+    public void setMultiInvokePath(String multiInvokePath) {
+        if (multiInvokePath != null && !multiInvokePath.startsWith("/")) {
+            throw new IllegalArgumentException("multiInvokePath deve começar por '/'.");
+        }
+        this.multiInvokePath = multiInvokePath;
+    }
+
+    public int getMaxMultiInvokeCalls() { return maxMultiInvokeCalls; }
+    public void setMaxMultiInvokeCalls(int maxMultiInvokeCalls) {
+        requirePositive(maxMultiInvokeCalls, "maxMultiInvokeCalls");
+        this.maxMultiInvokeCalls = maxMultiInvokeCalls;
+    }
+
+    public Executor getMultiInvokeExecutor() { return multiInvokeExecutor; }
+    public void setMultiInvokeExecutor(Executor multiInvokeExecutor) { this.multiInvokeExecutor = multiInvokeExecutor; }
+
+    private static void requirePositive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " deve ser positivo.");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package middleware.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ajuste adaptativo do limite de concorrência (AIMD).
+ * Enquanto a latência observada fica abaixo do alvo e o limite está a ser usado, o limite
+ * cresce uma unidade por "janela" de pedidos; quando a latência passa do alvo, o limite é
+ * multiplicado por {@code backoffRatio}.
+ */
+public class AimdLimit {
+
+    private final long targetLatencyNanos;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+
+    private final AtomicInteger successesInWindow = new AtomicInteger();
+
+    public AimdLimit(long targetLatencyMs, int minLimit, int maxLimit, double backoffRatio) {
+        if (minLimit <= 0 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Parâmetros do limite adaptativo inválidos.");
+        }
+        this.targetLatencyNanos = targetLatencyMs * 1_000_000L;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+    }
+
+    public int getMinLimit() { return minLimit; }
+    public int getMaxLimit() { return maxLimit; }
+
+    /**
+     * @param latencyNanos duração da invocação que terminou
+     * @param inFlight     invocações em curso quando ela começou
+     * @param limit        limite atual
+     * @return o novo limite
+     */
+    public int update(long latencyNanos, int inFlight, int limit) {
+        if (latencyNanos > targetLatencyNanos) {
+            successesInWindow.set(0);
+            return Math.max(minLimit, (int) (limit * backoffRatio));
+        }
+
+        // só vale a pena crescer se o limite atual está de facto a ser usado
+        if (inFlight * 2 < limit) {
+            return limit;
+        }
+        if (successesInWindow.incrementAndGet() >= limit) {
+            successesInWindow.set(0);
+            return Math.min(maxLimit, limit + 1);
+        }
+        return limit;
+    }
+}
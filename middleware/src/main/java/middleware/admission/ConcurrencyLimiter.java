@@ -0,0 +1,118 @@
+package middleware.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import middleware.exceptions.ServiceUnavailableException;
+
+/**
+ * Limita o número de invocações em curso. Quando o limite está esgotado, até {@code maxQueue}
+ * pedidos esperam no máximo {@code queueTimeoutMs} por uma vaga; os restantes são recusados
+ * de imediato com {@link ServiceUnavailableException}, em vez de acumularem trabalho.
+ */
+public class ConcurrencyLimiter {
+
+    private final String name;
+    private final int maxQueue;
+    private final long queueTimeoutNanos;
+    private final int retryAfterSeconds;
+    private final AimdLimit adaptive; // null = limite fixo
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private volatile int limit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    public ConcurrencyLimiter(String name, int limit, int maxQueue, long queueTimeoutMs, int retryAfterSeconds, AimdLimit adaptive) {
+        if (limit <= 0 || maxQueue < 0 || queueTimeoutMs < 0) {
+            throw new IllegalArgumentException("Parâmetros do limitador '" + name + "' inválidos.");
+        }
+        this.name = name;
+        this.limit = adaptive != null ? Math.max(adaptive.getMinLimit(), Math.min(limit, adaptive.getMaxLimit())) : limit;
+        this.maxQueue = maxQueue;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.adaptive = adaptive;
+    }
+
+    // limitador sem fila: recusa assim que o limite estiver esgotado
+    public ConcurrencyLimiter(String name, int limit, int retryAfterSeconds) {
+        this(name, limit, 0, 0, retryAfterSeconds, null);
+    }
+
+    /**
+     * Reserva uma vaga, esperando na fila se necessário.
+     *
+     * @return o número de invocações em curso no momento da entrada (usado pelo ajuste adaptativo)
+     * @throws ServiceUnavailableException se o limite e a fila estiverem esgotados, ou a espera expirar
+     */
+    public int acquire() throws ServiceUnavailableException {
+        int current = tryAcquire();
+        if (current >= 0) return current;
+
+        if (waiting.incrementAndGet() > maxQueue) {
+            waiting.decrementAndGet();
+            throw reject();
+        }
+        lock.lock();
+        try {
+            long nanos = queueTimeoutNanos;
+            while ((current = tryAcquire()) < 0) {
+                if (nanos <= 0) throw reject();
+                nanos = released.awaitNanos(nanos);
+            }
+            return current;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject();
+        } finally {
+            waiting.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Liberta a vaga e, no modo adaptativo, usa a latência observada para ajustar o limite.
+     */
+    public void release(long latencyNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        if (adaptive != null) {
+            // ler e escrever o limite sob o lock: libertações em paralelo não perdem ajustes umas das
+            // outras (um CAS não serve, porque update também conta a janela de sucessos do AIMD)
+            lock.lock();
+            try {
+                limit = adaptive.update(latencyNanos, inFlightAtStart, limit);
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public int getLimit() { return limit; }
+    public int getInFlight() { return inFlight.get(); }
+    public int getWaiting() { return waiting.get(); }
+
+    private int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) return -1;
+            if (inFlight.compareAndSet(current, current + 1)) return current;
+        }
+    }
+
+    private ServiceUnavailableException reject() {
+        return new ServiceUnavailableException("Limite de concorrência atingido em '" + name + "' (limite=" + limit + ").", retryAfterSeconds);
+    }
+}
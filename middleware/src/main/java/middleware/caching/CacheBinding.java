@@ -0,0 +1,88 @@
+package middleware.caching;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import middleware.component_model.annotations.CacheEvict;
+import middleware.component_model.annotations.Cacheable;
+
+/**
+ * Configuração de cache de uma rota, resolvida no registo: se a resposta é guardada (@Cacheable)
+ * e com que tags, e que tags a rota invalida (@CacheEvict).
+ */
+public class CacheBinding {
+
+    private final long ttlMs;                // 0 se a rota não é @Cacheable
+    private final TagTemplate[] cacheTags;
+    private final TagTemplate[] evictTags;
+
+    private CacheBinding(long ttlMs, TagTemplate[] cacheTags, TagTemplate[] evictTags) {
+        this.ttlMs = ttlMs;
+        this.cacheTags = cacheTags;
+        this.evictTags = evictTags;
+    }
+
+    /**
+     * @return a configuração, ou null se o método não tem @Cacheable nem @CacheEvict
+     * @throws IllegalArgumentException se @Cacheable não está num GET, o ttl não é positivo ou uma tag é inválida
+     */
+    public static CacheBinding of(Method method, String httpMethod) {
+        Cacheable cacheable = method.getAnnotation(Cacheable.class);
+        CacheEvict evict = method.getAnnotation(CacheEvict.class);
+        if (cacheable == null && evict == null) return null;
+
+        long ttlMs = 0;
+        TagTemplate[] cacheTags = new TagTemplate[0];
+        if (cacheable != null) {
+            if (!"GET".equals(httpMethod)) {
+                throw new IllegalArgumentException("@Cacheable só é permitido em rotas GET (" + method.getName() + ").");
+            }
+            if (cacheable.ttlMs() <= 0) {
+                throw new IllegalArgumentException("ttlMs de " + method.getName() + " deve ser positivo.");
+            }
+            ttlMs = cacheable.ttlMs();
+            cacheTags = compile(cacheable.tags(), method);
+        }
+        TagTemplate[] evictTags = evict != null ? compile(evict.tags(), method) : new TagTemplate[0];
+        return new CacheBinding(ttlMs, cacheTags, evictTags);
+    }
+
+    private static TagTemplate[] compile(String[] templates, Method method) {
+        TagTemplate[] compiled = new TagTemplate[templates.length];
+        for (int i = 0; i < templates.length; i++) {
+            compiled[i] = TagTemplate.compile(templates[i], method);
+        }
+        return compiled;
+    }
+
+    public boolean isCacheable() {
+        return ttlMs > 0;
+    }
+
+    public boolean isEvicting() {
+        return evictTags.length > 0;
+    }
+
+    public long getTtlMs() {
+        return ttlMs;
+    }
+
+    // tags da entrada guardada para estes argumentos
+    public List<String> cacheTags(Object[] args) {
+        return tags(cacheTags, args);
+    }
+
+    // tags a invalidar depois de uma invocação com estes argumentos
+    public List<String> evictTags(Object[] args) {
+        return tags(evictTags, args);
+    }
+
+    private static List<String> tags(TagTemplate[] templates, Object[] args) {
+        List<String> tags = new ArrayList<>();
+        for (TagTemplate template : templates) {
+            template.collect(args, tags);
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,38 @@
+package middleware.caching;
+
+import java.util.Arrays;
+
+/**
+ * Chave de uma resposta em cache: a rota (ex.: "GET:/messagestore/getMembers"), ou o alvo concreto numa rota
+ * com parâmetros (ex.: "GET:/messagestore/groups/g1/messages"), e os bytes do corpo do pedido.
+ */
+public final class CacheKey {
+
+    private final String route;
+    private final byte[] body;
+    private final int hash;
+
+    private CacheKey(String route, byte[] body) {
+        this.route = route;
+        this.body = body;
+        this.hash = 31 * route.hashCode() + Arrays.hashCode(body);
+    }
+
+    // copia a fatia do corpo: o buffer do transporte é reutilizado no pedido seguinte
+    public static CacheKey of(String route, byte[] buffer, int offset, int length) {
+        return new CacheKey(route, Arrays.copyOfRange(buffer, offset, offset + length));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CacheKey key
+                && hash == key.hash
+                && route.equals(key.route)
+                && Arrays.equals(body, key.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,268 @@
+package middleware.caching;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import middleware.metrics.MetricsRegistry;
+
+/**
+ * Cache limitado de respostas já serializadas, partilhado por todas as rotas @Cacheable.
+ *
+ * Cada segmento é um LRU segmentado: uma entrada nova entra na zona de prova e só passa à zona
+ * protegida quando volta a ser lida, por isso uma rajada de pedidos únicos não expulsa as
+ * entradas mais usadas. Os segmentos têm locks próprios, escolhidos pelo hash da chave.
+ *
+ * As invalidações são por tag. Para que uma resposta calculada antes de uma invalidação não seja
+ * guardada depois dela, quem falha tira um {@link #stamp()} antes de invocar o método e o
+ * {@link #put} compara-o com as gerações (por faixa de hash) das tags da entrada.
+ */
+public class ResponseCache {
+
+    private static final int SEGMENTS = 16;
+    private static final int GENERATION_STRIPES = 64;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    // entradas de cada tag, para a invalidação não ter de percorrer o cache
+    private final Map<String, Set<Entry>> entriesByTag = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ResponseCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries deve ser positivo.");
+        }
+        int perSegment = Math.max(2, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * @return os bytes guardados, ou null se não há entrada válida
+     */
+    public byte[] get(CacheKey key) {
+        Entry entry = segmentFor(key).get(key, System.nanoTime());
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    // gerações atuais, a tirar antes de calcular a resposta que vai para put
+    public long[] stamp() {
+        long[] stamp = new long[GENERATION_STRIPES];
+        for (int i = 0; i < stamp.length; i++) {
+            stamp[i] = generations.get(i);
+        }
+        return stamp;
+    }
+
+    /**
+     * Guarda a resposta, a não ser que alguma das suas tags tenha sido invalidada desde o {@code stamp}.
+     */
+    public void put(CacheKey key, byte[] value, long ttlMs, Collection<String> tags, long[] stamp) {
+        String[] entryTags = tags.toArray(String[]::new);
+        if (isStale(entryTags, stamp)) return;
+
+        // entra no índice antes de voltar a testar: uma invalidação concorrente ou vê a entrada,
+        // ou já mudou a geração que o segundo teste lê
+        Entry entry = new Entry(key, value, System.nanoTime() + ttlMs * 1_000_000, entryTags);
+        for (String tag : entryTags) {
+            // tudo dentro do compute: um unindex concorrente não pode tirar do mapa o conjunto vazio
+            // entre obtê-lo e acrescentar a entrada, o que a deixaria num conjunto órfão
+            entriesByTag.compute(tag, (t, entries) -> {
+                Set<Entry> indexed = entries != null ? entries : ConcurrentHashMap.newKeySet();
+                indexed.add(entry);
+                return indexed;
+            });
+        }
+        segmentFor(key).put(entry);
+
+        if (isStale(entryTags, stamp)) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Remove as entradas com qualquer uma das tags.
+     */
+    public void invalidate(Collection<String> tags) {
+        for (String tag : tags) {
+            generations.incrementAndGet(stripe(tag));
+            Set<Entry> entries = entriesByTag.remove(tag);
+            if (entries == null) continue;
+            for (Entry entry : entries) {
+                if (segmentFor(entry.key).remove(entry.key, entry)) {
+                    invalidations.increment();
+                    unindex(entry);
+                }
+            }
+        }
+    }
+
+    private boolean isStale(String[] tags, long[] stamp) {
+        for (String tag : tags) {
+            int stripe = stripe(tag);
+            if (generations.get(stripe) != stamp[stripe]) return true;
+        }
+        return false;
+    }
+
+    private void remove(Entry entry) {
+        if (segmentFor(entry.key).remove(entry.key, entry)) {
+            unindex(entry);
+        }
+    }
+
+    // tira a entrada do índice das suas tags (expulsa, expirada, substituída ou invalidada);
+    // é a própria entrada que sai, não a chave, que pode já ter uma entrada mais nova
+    private void unindex(Entry entry) {
+        for (String tag : entry.tags) {
+            entriesByTag.computeIfPresent(tag, (t, entries) -> {
+                entries.remove(entry);
+                return entries.isEmpty() ? null : entries;
+            });
+        }
+    }
+
+    private Segment segmentFor(CacheKey key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static int stripe(String tag) {
+        int hash = tag.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    public long getHitCount() { return hits.sum(); }
+    public long getMissCount() { return misses.sum(); }
+    public long getEvictionCount() { return evictions.sum(); }
+    public long getInvalidationCount() { return invalidations.sum(); }
+
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // fração de leituras servidas pelo cache desde o arranque
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.registerCounter("middleware_cache_hits_total", "Respostas servidas pelo cache.", this::getHitCount);
+        metrics.registerCounter("middleware_cache_misses_total", "Pedidos a rotas @Cacheable sem entrada no cache.", this::getMissCount);
+        metrics.registerCounter("middleware_cache_evictions_total", "Entradas expulsas por falta de espaço ou expiradas.", this::getEvictionCount);
+        metrics.registerCounter("middleware_cache_invalidations_total", "Entradas removidas por @CacheEvict.", this::getInvalidationCount);
+        metrics.registerGauge("middleware_cache_entries", "Entradas no cache de respostas.", this::getSize);
+    }
+
+    private static final class Entry {
+        final CacheKey key;
+        final byte[] value;
+        final long expiresAtNanos;
+        final String[] tags;
+
+        Entry(CacheKey key, byte[] value, long expiresAtNanos, String[] tags) {
+            this.key = key;
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+            this.tags = tags;
+        }
+    }
+
+    // LRU segmentado: prova (20%) e protegida (80%), ambas em ordem de acesso
+    private final class Segment {
+        private final int probationCapacity;
+        private final int protectedCapacity;
+        private final LinkedHashMap<CacheKey, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<CacheKey, Entry> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+        Segment(int capacity) {
+            this.probationCapacity = Math.max(1, capacity / 5);
+            this.protectedCapacity = Math.max(1, capacity - probationCapacity);
+        }
+
+        Entry get(CacheKey key, long now) {
+            Entry expired;
+            synchronized (this) {
+                Entry entry = protectedEntries.get(key);
+                if (entry == null) {
+                    entry = probation.remove(key);
+                    if (entry == null) return null;
+                    if (entry.expiresAtNanos - now > 0) {
+                        promote(entry);
+                        return entry;
+                    }
+                } else if (entry.expiresAtNanos - now > 0) {
+                    return entry;
+                } else {
+                    protectedEntries.remove(key);
+                }
+                expired = entry;
+            }
+            evictions.increment();
+            unindex(expired);
+            return null;
+        }
+
+        // segunda leitura: passa à zona protegida; a mais antiga desta volta à prova
+        private void promote(Entry entry) {
+            protectedEntries.put(entry.key, entry);
+            if (protectedEntries.size() > protectedCapacity) {
+                Iterator<Entry> eldest = protectedEntries.values().iterator();
+                Entry demoted = eldest.next();
+                eldest.remove();
+                probation.put(demoted.key, demoted);
+            }
+        }
+
+        void put(Entry entry) {
+            Entry evicted = null;
+            Entry replaced;
+            synchronized (this) {
+                replaced = protectedEntries.remove(entry.key);
+                if (replaced == null) replaced = probation.remove(entry.key);
+                probation.put(entry.key, entry);
+                if (probation.size() > probationCapacity) {
+                    Iterator<Entry> eldest = probation.values().iterator();
+                    evicted = eldest.next();
+                    eldest.remove();
+                }
+            }
+            if (replaced != null) {
+                unindex(replaced);
+            }
+            if (evicted != null) {
+                evictions.increment();
+                unindex(evicted);
+            }
+        }
+
+        synchronized boolean remove(CacheKey key, Entry entry) {
+            return protectedEntries.remove(key, entry) || probation.remove(key, entry);
+        }
+
+        synchronized int size() {
+            return probation.size() + protectedEntries.size();
+        }
+    }
+}
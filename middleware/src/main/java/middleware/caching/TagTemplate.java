@@ -0,0 +1,169 @@
+package middleware.caching;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import middleware.component_model.annotations.PathVariable;
+import middleware.component_model.annotations.QueryParam;
+import middleware.component_model.annotations.RequestBody;
+
+/**
+ * Uma tag de cache como "group:{groupId}", compilada no registo da rota. Cada {nome} vem do
+ * parâmetro @PathVariable ou @QueryParam com esse nome, que tem prioridade; só se o método não
+ * tiver esse parâmetro é lido do @RequestBody, por um getter já resolvido. Uma tag pode misturar
+ * as duas fontes. Se o corpo for uma List (rota @Batch), as propriedades do corpo são lidas de
+ * cada item e a tag é calculada por item.
+ */
+final class TagTemplate {
+
+    private final String[] literals;      // texto antes de cada propriedade, e o resto no fim
+    private final MethodHandle[] getters; // (Object) -> Object, ou null se a propriedade é um parâmetro
+    private final int[] params;           // índice do parâmetro @PathVariable/@QueryParam, ou -1 se vem do corpo
+    private final int bodyIndex;          // -1 se nenhuma propriedade vem do corpo
+    private final boolean list;
+
+    private TagTemplate(String[] literals, MethodHandle[] getters, int[] params, int bodyIndex, boolean list) {
+        this.literals = literals;
+        this.getters = getters;
+        this.params = params;
+        this.bodyIndex = bodyIndex;
+        this.list = list;
+    }
+
+    /**
+     * @throws IllegalArgumentException se a tag usa propriedades que nem os parâmetros nem o @RequestBody do método têm
+     */
+    static TagTemplate compile(String template, Method method) {
+        List<String> literals = new ArrayList<>();
+        List<String> properties = new ArrayList<>();
+        int position = 0;
+        int open;
+        while ((open = template.indexOf('{', position)) >= 0) {
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Tag de cache mal formada em " + method.getName() + ": " + template);
+            }
+            literals.add(template.substring(position, open));
+            properties.add(template.substring(open + 1, close));
+            position = close + 1;
+        }
+        literals.add(template.substring(position));
+
+        Parameter[] parameters = method.getParameters();
+        MethodHandle[] getters = new MethodHandle[properties.size()];
+        int[] params = new int[properties.size()];
+        int bodyIndex = -1;
+        boolean list = false;
+        for (int p = 0; p < params.length; p++) {
+            params[p] = parameterNamed(parameters, properties.get(p));
+            if (params[p] >= 0) continue;
+
+            if (bodyIndex < 0) {
+                bodyIndex = bodyIndex(parameters);
+                if (bodyIndex < 0) {
+                    throw new IllegalArgumentException("A tag de cache '" + template + "' de " + method.getName()
+                            + " usa '" + properties.get(p) + "', que não é um parâmetro do pedido, e o método não tem @RequestBody.");
+                }
+                list = parameters[bodyIndex].getType() == List.class;
+            }
+            Class<?> bodyType = list ? elementType(parameters[bodyIndex].getParameterizedType()) : parameters[bodyIndex].getType();
+            getters[p] = getter(bodyType, properties.get(p), method);
+        }
+        return new TagTemplate(literals.toArray(String[]::new), getters, params, bodyIndex, list);
+    }
+
+    private static int parameterNamed(Parameter[] parameters, String name) {
+        for (int i = 0; i < parameters.length; i++) {
+            PathVariable pathVariable = parameters[i].getAnnotation(PathVariable.class);
+            QueryParam queryParam = parameters[i].getAnnotation(QueryParam.class);
+            if ((pathVariable != null && pathVariable.value().equals(name)) || (queryParam != null && queryParam.value().equals(name))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int bodyIndex(Parameter[] parameters) {
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isAnnotationPresent(RequestBody.class)) return i;
+        }
+        return -1;
+    }
+
+    private static Class<?> elementType(Type type) {
+        if (type instanceof ParameterizedType parameterized && parameterized.getActualTypeArguments()[0] instanceof Class<?> element) {
+            return element;
+        }
+        return Object.class;
+    }
+
+    private static MethodHandle getter(Class<?> type, String property, Method method) {
+        String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (String name : new String[] { "get" + suffix, "is" + suffix }) {
+            try {
+                return MethodHandles.publicLookup()
+                        .unreflect(type.getMethod(name))
+                        .asType(MethodType.methodType(Object.class, Object.class));
+            } catch (NoSuchMethodException e) {
+                // tenta o próximo prefixo
+            } catch (IllegalAccessException e) {
+                break;
+            }
+        }
+        throw new IllegalArgumentException("Tag de cache de " + method.getName() + ": " + type.getSimpleName()
+                + " não tem um getter público para '" + property + "'.");
+    }
+
+    // acrescenta a out as tags deste pedido (nenhuma se o corpo, ou um parâmetro da tag, for nulo)
+    void collect(Object[] args, Collection<String> out) {
+        if (bodyIndex < 0) {
+            add(render(args, null), out);
+            return;
+        }
+        Object body = args[bodyIndex];
+        if (body == null) return;
+        if (list) {
+            for (Object item : (List<?>) body) {
+                if (item != null) add(render(args, item), out);
+            }
+        } else {
+            add(render(args, body), out);
+        }
+    }
+
+    private static void add(String tag, Collection<String> out) {
+        if (tag != null) out.add(tag);
+    }
+
+    private String render(Object[] args, Object body) {
+        if (params.length == 0) return literals[0];
+
+        StringBuilder tag = new StringBuilder(literals[0]);
+        for (int i = 0; i < params.length; i++) {
+            Object value;
+            if (params[i] >= 0) {
+                value = args[params[i]];
+                if (value == null) return null; // @QueryParam opcional ausente
+            } else {
+                try {
+                    value = (Object) getters[i].invokeExact(body);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            }
+            tag.append(value);
+            tag.append(literals[i + 1]);
+        }
+        return tag.toString();
+    }
+}
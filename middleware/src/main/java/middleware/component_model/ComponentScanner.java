@@ -2,6 +2,8 @@ package middleware.component_model;
 
 import java.lang.reflect.Method;
 
+import middleware.admission.ConcurrencyLimiter;
+import middleware.caching.CacheBinding;
 import middleware.component_model.annotations.DeleteMapping;
 import middleware.component_model.annotations.GetMapping;
 import middleware.component_model.annotations.PostMapping;
@@ -9,9 +11,15 @@ import middleware.component_model.annotations.PutMapping;
 import middleware.component_model.annotations.RequestMapping;
 import middleware.component_model.identification.AbsoluteObjectReference;
 import middleware.component_model.identification.Lookup;
+import middleware.component_model.remoting.BatchBinding;
+import middleware.component_model.remoting.Marshaller;
+import middleware.component_model.remoting.MethodBinding;
+import middleware.component_model.remoting.RouteBinding;
 import middleware.lifecycle.LifecycleManager;
 import middleware.lifecycle.annotations.LifecyclePolicy;
 import middleware.lifecycle.annotations.LifecyclePolicyType;
+import middleware.metrics.MetricsRegistry;
+import middleware.streaming.EventStreamBinding;
 import middleware.util.Log;
 
 
@@ -20,10 +28,16 @@ public class ComponentScanner {
 
     private final Lookup lookup;
     private final LifecycleManager lifecycleManager;
+    private final Marshaller marshaller;
+    private final MetricsRegistry metrics; // pode ser nulo
+    private final int retryAfterSeconds;
 
-    public ComponentScanner(Lookup lookup, LifecycleManager lifecycleManager) {
+    public ComponentScanner(Lookup lookup, LifecycleManager lifecycleManager, Marshaller marshaller, MetricsRegistry metrics, int retryAfterSeconds) {
         this.lookup = lookup;
         this.lifecycleManager = lifecycleManager;
+        this.marshaller = marshaller;
+        this.metrics = metrics;
+        this.retryAfterSeconds = retryAfterSeconds;
     }
 
     public void register(Object instance) throws IllegalArgumentException {
@@ -42,6 +56,8 @@ public class ComponentScanner {
             Log.info("ComponentScanner", "Nenhuma Política de Ciclo de Vida definida para %s. Usando padrão: %s", classe.getSimpleName(), policy);
         }
 
+        lifecycleManager.registerComponent(classe, policy);
+
         // Se for STATIC_INSTANCE, cacheia a instância no LifecycleManager
         if (policy == LifecyclePolicyType.STATIC_INSTANCE) {
             lifecycleManager.cacheStaticInstance(classe, instance);
@@ -53,36 +69,63 @@ public class ComponentScanner {
 
         Log.info("ComponentScanner", "Registando Controller: %s", basePath);
 
+        // limite partilhado por todas as rotas do componente
+        ConcurrencyLimiter componentLimiter = classMapping.maxConcurrency() > 0
+                ? new ConcurrencyLimiter(basePath, classMapping.maxConcurrency(), retryAfterSeconds)
+                : null;
+
         for (Method method : classe.getDeclaredMethods()) {
             String httpMethod = null;
             String methodPath = null;
+            int maxConcurrency = 0;
 
             if (method.isAnnotationPresent(GetMapping.class)) {
                 httpMethod = "GET";
                 methodPath = method.getAnnotation(GetMapping.class).path();
+                maxConcurrency = method.getAnnotation(GetMapping.class).maxConcurrency();
             } else if (method.isAnnotationPresent(PostMapping.class)) {
                 httpMethod = "POST";
                 methodPath = method.getAnnotation(PostMapping.class).path();
+                maxConcurrency = method.getAnnotation(PostMapping.class).maxConcurrency();
             } else if (method.isAnnotationPresent(PutMapping.class)) {
                 httpMethod = "PUT";
                 methodPath = method.getAnnotation(PutMapping.class).path();
+                maxConcurrency = method.getAnnotation(PutMapping.class).maxConcurrency();
             } else if (method.isAnnotationPresent(DeleteMapping.class)) {
                 httpMethod = "DELETE";
                 methodPath = method.getAnnotation(DeleteMapping.class).path();
+                maxConcurrency = method.getAnnotation(DeleteMapping.class).maxConcurrency();
             }
 
             if (httpMethod != null) {
                 // rota completa Ex.: /messagestore/createGroup
                 String fullPath = basePath + methodPath;
 
-                // monta a CHAVE ÚNICA do lookup. Ex.: "POST:/messagestore/createGroup"
-                String lookupKey = httpMethod + ":" + fullPath;
+                // variáveis {nome} do caminho e @QueryParam. A chave é única. Ex.: "GET:/messagestore/groups/{groupId}/messages"
+                RouteBinding route = RouteBinding.of(httpMethod, fullPath, method);
+
+                ConcurrencyLimiter routeLimiter = maxConcurrency > 0
+                        ? new ConcurrencyLimiter(route.getKey(), maxConcurrency, retryAfterSeconds)
+                        : null;
+
+                // parâmetros e tipos do método resolvidos uma vez, fora do caminho dos pedidos
+                MethodBinding binding = marshaller.bind(method);
+                EventStreamBinding eventStream = EventStreamBinding.of(method);
+                BatchBinding batch = BatchBinding.of(method);
+                CacheBinding cache = CacheBinding.of(method, httpMethod);
+                if (cache != null && cache.isCacheable() && eventStream != null) {
+                    throw new IllegalArgumentException("Uma rota @EventStream não pode ser @Cacheable (" + method.getName() + ").");
+                }
 
                 // Sempre criamos a AbsoluteObjectReference, independentemente da política
-                AbsoluteObjectReference absoluteReference = new AbsoluteObjectReference(basePath, classe, method, policy);
+                AbsoluteObjectReference absoluteReference = new AbsoluteObjectReference(basePath, classe, method, policy,
+                        componentLimiter, routeLimiter, binding, eventStream, batch, cache, route);
 
                  // regista no lookup
-                lookup.bind(lookupKey, absoluteReference);
+                lookup.bind(httpMethod, fullPath, absoluteReference);
+                if (metrics != null) {
+                    metrics.registerRoute(httpMethod, fullPath);
+                }
             }
         }
     }
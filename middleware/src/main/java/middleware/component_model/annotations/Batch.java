@@ -0,0 +1,19 @@
+package middleware.component_model.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca uma rota cujo @RequestBody é uma lista de itens processados num só pedido.
+ * Os interceptadores veem o lote inteiro em {@link middleware.extension.InvocationContext#getBatch()},
+ * e podem validá-lo de uma vez em vez de item a item.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Batch {
+
+    // pedidos com mais itens são recusados com 400
+    int maxItems() default 1000;
+}
@@ -0,0 +1,18 @@
+package middleware.component_model.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Invalida, depois de cada invocação da rota, as entradas de cache com as tags indicadas
+ * (mesmo formato de {@link Cacheable#tags()}). Numa rota @Batch as tags são calculadas para
+ * cada item da lista.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CacheEvict {
+
+    String[] tags();
+}
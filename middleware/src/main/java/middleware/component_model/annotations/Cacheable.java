@@ -0,0 +1,29 @@
+package middleware.component_model.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Guarda a resposta já serializada de uma rota @GetMapping, por caminho concreto (com as
+ * variáveis e a query string) e corpo do pedido. Um acerto
+ * devolve os bytes guardados sem passar pelo objeto remoto nem pelo Marshaller; por isso os
+ * interceptadores só correm nas faltas, e rotas que precisem de autorização por pedido não
+ * devem usar cache.
+ *
+ * As tags ligam a entrada às alterações que a invalidam (ver {@link CacheEvict}). Cada tag é
+ * um texto com nomes entre chavetas, ex.: "group:{groupId}". Cada nome é o parâmetro
+ * {@link PathVariable} ou {@link QueryParam} com esse nome, se o método o tiver, ou senão a
+ * propriedade do @RequestBody; assim "group:{groupId}" serve tanto para
+ * /getMessages (groupId no corpo) como para /groups/{groupId}/messages.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cacheable {
+
+    // tempo de vida de cada entrada, mesmo sem invalidações
+    long ttlMs() default 30_000;
+
+    String[] tags() default {};
+}
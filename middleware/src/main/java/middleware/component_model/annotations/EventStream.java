@@ -0,0 +1,28 @@
+package middleware.component_model.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import middleware.streaming.OverflowPolicy;
+
+/**
+ * Marca uma rota (junto com @GetMapping) como stream de Server-Sent Events.
+ * O método recebe um parâmetro {@link middleware.streaming.EventSink} por onde envia os eventos;
+ * a conexão fica aberta depois de o método retornar, até o cliente ou o sink a fecharem.
+ * Só é aberto o stream para pedidos com "Accept: text/event-stream".
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface EventStream {
+
+    // eventos que podem ficar à espera de ser escritos para um subscritor lento
+    int queueCapacity() default 256;
+
+    // o que fazer quando essa fila enche
+    OverflowPolicy overflow() default OverflowPolicy.DISCONNECT;
+
+    // intervalo (ms) entre comentários de keep-alive quando não há eventos
+    long heartbeatMs() default 15_000;
+}
@@ -0,0 +1,17 @@
+package middleware.component_model.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Liga o parâmetro a um segmento {nome} do caminho da rota, ex.: "/groups/{groupId}/messages".
+ * Tipos suportados: String, int, long, boolean (e os wrappers).
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface PathVariable {
+    // nome da variável no caminho
+    String value();
+}
@@ -9,4 +9,7 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 public @interface PutMapping {
     String path();
+
+    // máximo de invocações simultâneas desta rota; acima dele o pedido recebe 503 (0 = sem limite)
+    int maxConcurrency() default 0;
 }
@@ -0,0 +1,19 @@
+package middleware.component_model.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Liga o parâmetro a um parâmetro da query string, ex.: "?cursor=10".
+ * Tipos suportados: String, int, long, boolean (e os wrappers).
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface QueryParam {
+    String value();
+
+    // sem o parâmetro, um pedido a uma rota com required = true recebe 400; senão o argumento fica null
+    boolean required() default true;
+}
@@ -10,4 +10,7 @@ import java.lang.annotation.Target;
 public @interface RequestMapping {
 
     String path();
+
+    // máximo de invocações simultâneas somando todas as rotas do componente (0 = sem limite)
+    int maxConcurrency() default 0;
 }
@@ -1,8 +1,18 @@
 package middleware.component_model.identification;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
+import middleware.admission.ConcurrencyLimiter;
+import middleware.caching.CacheBinding;
+import middleware.component_model.remoting.BatchBinding;
+import middleware.component_model.remoting.MethodBinding;
+import middleware.component_model.remoting.RouteBinding;
 import middleware.lifecycle.annotations.LifecyclePolicyType;
+import middleware.streaming.EventStreamBinding;
 
 public class AbsoluteObjectReference {
 
@@ -10,12 +20,50 @@ public class AbsoluteObjectReference {
     private final Method method;
     private final Class<?> remoteObjectClass; // PER_REQUEST
     private final LifecyclePolicyType policyType;
+    private final ConcurrencyLimiter componentLimiter; // partilhado por todas as rotas do componente, ou null
+    private final ConcurrencyLimiter routeLimiter;     // só desta rota, ou null
+    private final MethodBinding binding;               // plano de (de)serialização preparado no registo, ou null
+    private final EventStreamBinding eventStream;      // só em rotas @EventStream, senão null
+    private final BatchBinding batch;                  // só em rotas @Batch, senão null
+    private final CacheBinding cache;                  // só em rotas @Cacheable/@CacheEvict, senão null
+    private final RouteBinding route;                  // método HTTP, caminho e parâmetros do pedido, ou null
 
+    // (Object alvo, Object[] args) -> Object; compilado uma vez para evitar Method.invoke em cada pedido
+    private final MethodHandle methodHandle;
+
+    // só o essencial para invocar o método, sem limites nem bindings (ex.: benchmarks)
     public AbsoluteObjectReference(String basePath, Class<?> remoteObjectClass, Method method, LifecyclePolicyType policyType) {
+        this(basePath, remoteObjectClass, method, policyType, null, null, null, null, null, null, null);
+    }
+
+    public AbsoluteObjectReference(String basePath, Class<?> remoteObjectClass, Method method, LifecyclePolicyType policyType,
+                                   ConcurrencyLimiter componentLimiter, ConcurrencyLimiter routeLimiter, MethodBinding binding,
+                                   EventStreamBinding eventStream, BatchBinding batch, CacheBinding cache, RouteBinding route) {
         this.basePath = basePath;
         this.remoteObjectClass = remoteObjectClass;
         this.method = method;
         this.policyType = policyType;
+        this.componentLimiter = componentLimiter;
+        this.routeLimiter = routeLimiter;
+        this.binding = binding;
+        this.eventStream = eventStream;
+        this.batch = batch;
+        this.cache = cache;
+        this.route = route;
+        this.methodHandle = compile(method);
+    }
+
+    private static MethodHandle compile(Method method) {
+        try {
+            if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                method.setAccessible(true);
+            }
+            return MethodHandles.lookup().unreflect(method)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Não foi possível preparar a invocação de " + method.getName() + ": " + e.getMessage(), e);
+        }
     }
 
     public String getBasePath() {
@@ -33,4 +81,36 @@ public class AbsoluteObjectReference {
     public LifecyclePolicyType getPolicyType() {
         return policyType;
     }
+
+    public ConcurrencyLimiter getComponentLimiter() {
+        return componentLimiter;
+    }
+
+    public ConcurrencyLimiter getRouteLimiter() {
+        return routeLimiter;
+    }
+
+    public MethodBinding getBinding() {
+        return binding;
+    }
+
+    public EventStreamBinding getEventStream() {
+        return eventStream;
+    }
+
+    public BatchBinding getBatch() {
+        return batch;
+    }
+
+    public CacheBinding getCache() {
+        return cache;
+    }
+
+    public RouteBinding getRoute() {
+        return route;
+    }
+
+    public MethodHandle getMethodHandle() {
+        return methodHandle;
+    }
 }
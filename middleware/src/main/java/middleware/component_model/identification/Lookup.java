@@ -1,19 +1,143 @@
 package middleware.component_model.identification;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+
 import middleware.util.Log;
 
+/**
+ * Registo das rotas: uma árvore radix por método HTTP, com as partes fixas dos caminhos
+ * comprimidas em arestas e um filho próprio para os segmentos {variável}.
+ *
+ * A procura percorre o caminho do pedido sem criar objetos (a query string é ignorada) e prefere
+ * sempre a parte fixa: "/groups/new" ganha a "/groups/{groupId}". As rotas são registadas no
+ * arranque; cada registo reconstrói as árvores e publica-as de uma vez, por isso as procuras
+ * concorrentes nunca veem uma árvore a meio.
+ */
 public class Lookup {
 
-    private final Map<String, AbsoluteObjectReference> registry = new ConcurrentHashMap<>();
+    private record Route(String httpMethod, String path, AbsoluteObjectReference reference) {}
+
+    private final List<Route> routes = new ArrayList<>();
+    private volatile Map<String, Node> trees = Map.of();
+
+    public synchronized void bind(String httpMethod, String path, AbsoluteObjectReference aor) {
+        Log.info("Lookup", "Binding path: %s:%s", httpMethod, path);
+        routes.removeIf(route -> route.httpMethod().equals(httpMethod) && route.path().equals(path));
+        routes.add(new Route(httpMethod, path, aor));
+
+        Map<String, Node> rebuilt = new HashMap<>();
+        for (Route route : routes) {
+            rebuilt.computeIfAbsent(route.httpMethod(), method -> new Node("")).insert(route.path(), 0, route.reference());
+        }
+        trees = Map.copyOf(rebuilt);
+    }
 
-    public void bind(String fullPath, AbsoluteObjectReference aor) {
-        Log.info("Lookup", "Binding path: %s", fullPath);
-        registry.put(fullPath, aor);
+    /**
+     * @param path o alvo do pedido, com ou sem query string
+     * @return a rota, ou null se nenhuma corresponde
+     */
+    public AbsoluteObjectReference find(String httpMethod, String path) {
+        Node root = trees.get(httpMethod);
+        if (root == null) return null;
+        int end = path.indexOf('?');
+        return root.match(path, 0, end < 0 ? path.length() : end);
     }
 
-    public AbsoluteObjectReference find(String fullPath) {
-        return registry.get(fullPath);
+    private static final class Node {
+        private String label;             // parte fixa consumida ao entrar neste nó
+        private Node[] children = new Node[0];
+        private Node variable;            // filho para um segmento {nome}, ou null
+        private AbsoluteObjectReference reference;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        // insere template[from..] abaixo deste nó (a label deste nó já foi consumida)
+        void insert(String template, int from, AbsoluteObjectReference aor) {
+            if (from == template.length()) {
+                reference = aor;
+                return;
+            }
+            if (template.charAt(from) == '{') {
+                int close = template.indexOf('}', from);
+                if (variable == null) variable = new Node("");
+                variable.insert(template, close + 1, aor);
+                return;
+            }
+
+            int open = template.indexOf('{', from);
+            int literalEnd = open < 0 ? template.length() : open;
+            Node child = child(template.charAt(from));
+            if (child == null) {
+                child = new Node(template.substring(from, literalEnd));
+                addChild(child);
+                child.insert(template, literalEnd, aor);
+                return;
+            }
+
+            int common = 0;
+            int max = Math.min(child.label.length(), literalEnd - from);
+            while (common < max && child.label.charAt(common) == template.charAt(from + common)) common++;
+            if (common < child.label.length()) {
+                // parte a aresta: o prefixo comum passa a ser um nó intermédio
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.children = new Node[] { child };
+                replaceChild(child, split);
+                child = split;
+            }
+            child.insert(template, from + common, aor);
+        }
+
+        AbsoluteObjectReference match(String path, int from, int end) {
+            if (from == end) return reference;
+
+            // primeiro a parte fixa
+            Node child = child(path.charAt(from));
+            if (child != null) {
+                int length = child.label.length();
+                if (from + length <= end && path.regionMatches(from, child.label, 0, length)) {
+                    AbsoluteObjectReference found = child.match(path, from + length, end);
+                    if (found != null) return found;
+                }
+            }
+
+            // depois um segmento variável, até à próxima '/' (nunca vazio)
+            if (variable != null) {
+                int segmentEnd = from;
+                while (segmentEnd < end && path.charAt(segmentEnd) != '/') segmentEnd++;
+                if (segmentEnd > from) {
+                    return variable.match(path, segmentEnd, end);
+                }
+            }
+            return null;
+        }
+
+        private Node child(char first) {
+            for (Node child : children) {
+                if (child.label.charAt(0) == first) return child;
+            }
+            return null;
+        }
+
+        private void addChild(Node child) {
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, children.length);
+            grown[children.length] = child;
+            children = grown;
+        }
+
+        private void replaceChild(Node old, Node replacement) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == old) {
+                    children[i] = replacement;
+                    return;
+                }
+            }
+        }
     }
 }
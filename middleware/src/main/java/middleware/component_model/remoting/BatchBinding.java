@@ -0,0 +1,49 @@
+package middleware.component_model.remoting;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.List;
+
+import middleware.component_model.annotations.Batch;
+import middleware.component_model.annotations.RequestBody;
+
+/**
+ * Configuração de uma rota @Batch, resolvida no registo: em que parâmetro chega a lista de itens
+ * e quantos itens um pedido pode trazer.
+ */
+public class BatchBinding {
+
+    private final int itemsIndex;
+    private final int maxItems;
+
+    public BatchBinding(int itemsIndex, int maxItems) {
+        this.itemsIndex = itemsIndex;
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * @return a configuração do lote, ou null se o método não tem @Batch
+     * @throws IllegalArgumentException se o @RequestBody do método não é uma List ou maxItems não é positivo
+     */
+    public static BatchBinding of(Method method) {
+        Batch annotation = method.getAnnotation(Batch.class);
+        if (annotation == null) return null;
+
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isAnnotationPresent(RequestBody.class)) {
+                if (parameters[i].getType() != List.class) {
+                    throw new IllegalArgumentException("O @RequestBody do método @Batch " + method.getName() + " deve ser uma List.");
+                }
+                if (annotation.maxItems() <= 0) {
+                    throw new IllegalArgumentException("maxItems de " + method.getName() + " deve ser positivo.");
+                }
+                return new BatchBinding(i, annotation.maxItems());
+            }
+        }
+        throw new IllegalArgumentException("O método @Batch " + method.getName() + " precisa de um parâmetro @RequestBody.");
+    }
+
+    public int getItemsIndex() { return itemsIndex; }
+    public int getMaxItems() { return maxItems; }
+}
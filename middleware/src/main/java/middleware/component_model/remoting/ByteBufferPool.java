@@ -0,0 +1,42 @@
+package middleware.component_model.remoting;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de ByteBuffers diretos de tamanho fixo, usados nas leituras do transporte NIO.
+ * Buffers diretos são caros de alocar e libertar, por isso são reaproveitados entre leituras.
+ */
+public class ByteBufferPool {
+
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idle = new AtomicInteger();
+    private final int bufferSize;
+    private final int maxIdle;
+
+    public ByteBufferPool(int bufferSize, int maxIdle) {
+        this.bufferSize = bufferSize;
+        this.maxIdle = maxIdle;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        idle.decrementAndGet();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) return;
+        buffer.clear();
+        // além de maxIdle o buffer é simplesmente descartado
+        if (idle.incrementAndGet() <= maxIdle) {
+            buffers.offer(buffer);
+        } else {
+            idle.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package middleware.component_model.remoting;
+
+public enum ExecutionMode {
+    // threads de plataforma (pool em cache no transporte bloqueante, pool fixo de workers no NIO)
+    PLATFORM,
+    // uma virtual thread por conexão/invocação, limitadas por um semáforo (maxConcurrentTasks)
+    VIRTUAL
+}
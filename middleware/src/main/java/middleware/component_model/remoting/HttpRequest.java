@@ -0,0 +1,63 @@
+package middleware.component_model.remoting;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pedido HTTP já interpretado pela camada de transporte.
+ * O corpo é uma fatia do buffer do parser (sem cópia) e só é válido enquanto o pedido é processado.
+ */
+public class HttpRequest {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final String httpMethod;
+    private final String path;
+    private final String version;
+    private final byte[] bodyBuffer;
+    private final int bodyOffset;
+    private final int bodyLength;
+    private final boolean keepAlive;
+    private final boolean acceptsEventStream;
+
+    public HttpRequest(String httpMethod, String path, String version, byte[] bodyBuffer, int bodyOffset, int bodyLength, boolean keepAlive) {
+        this(httpMethod, path, version, bodyBuffer, bodyOffset, bodyLength, keepAlive, false);
+    }
+
+    public HttpRequest(String httpMethod, String path, String version, byte[] bodyBuffer, int bodyOffset, int bodyLength,
+                       boolean keepAlive, boolean acceptsEventStream) {
+        this.httpMethod = httpMethod;
+        this.path = path;
+        this.version = version;
+        this.bodyBuffer = bodyBuffer != null ? bodyBuffer : EMPTY;
+        this.bodyOffset = bodyOffset;
+        this.bodyLength = bodyLength;
+        this.keepAlive = keepAlive;
+        this.acceptsEventStream = acceptsEventStream;
+    }
+
+    public String getHttpMethod() { return httpMethod; }
+    public String getPath() { return path; }
+    public String getVersion() { return version; }
+
+    public byte[] getBodyBuffer() { return bodyBuffer; }
+    public int getBodyOffset() { return bodyOffset; }
+    public int getBodyLength() { return bodyLength; }
+
+    // decodifica o corpo; só para quem precisa mesmo de uma String (o caminho normal usa os bytes)
+    public String getBody() {
+        return new String(bodyBuffer, bodyOffset, bodyLength, StandardCharsets.UTF_8);
+    }
+
+    // se o cliente pediu (ou aceita) manter a conexão aberta depois da resposta
+    public boolean isKeepAlive() { return keepAlive; }
+
+    // se o header Accept inclui text/event-stream (cliente de Server-Sent Events)
+    public boolean acceptsEventStream() { return acceptsEventStream; }
+
+    /**
+     * HTTP/1.1 é persistente por omissão; HTTP/1.0 só com "Connection: keep-alive".
+     */
+    public static boolean isKeepAlive(String version, boolean connectionClose, boolean connectionKeepAlive) {
+        return "HTTP/1.1".equals(version) ? !connectionClose : connectionKeepAlive;
+    }
+}
@@ -0,0 +1,276 @@
+package middleware.component_model.remoting;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import middleware.exceptions.BadRequestException;
+import middleware.exceptions.NotImplementedException;
+
+/**
+ * Parser HTTP/1.1 incremental, orientado a bytes.
+ * Os bytes chegam aos pedaços via {@code feed} e {@link #next()} devolve um pedido assim que ele
+ * estiver completo. Bytes a mais (pedidos em pipeline) ficam guardados para a próxima chamada.
+ *
+ * O buffer interno é reutilizado entre pedidos: nomes de headers são comparados byte a byte,
+ * métodos e versões conhecidos usam constantes e o corpo é entregue como uma fatia desse buffer,
+ * válida até à próxima chamada a {@code feed} ou {@code next}.
+ */
+public class HttpRequestParser {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte[] CONTENT_LENGTH = ascii("content-length");
+    private static final byte[] TRANSFER_ENCODING = ascii("transfer-encoding");
+    private static final byte[] CONNECTION = ascii("connection");
+    private static final byte[] CLOSE = ascii("close");
+    private static final byte[] KEEP_ALIVE = ascii("keep-alive");
+    private static final byte[] ACCEPT = ascii("accept");
+    private static final byte[] EVENT_STREAM = ascii("text/event-stream");
+
+    // valores frequentes devolvidos sem alocar uma String nova
+    private static final String[] KNOWN_METHODS = { "GET", "POST", "PUT", "DELETE" };
+    private static final String[] KNOWN_VERSIONS = { "HTTP/1.1", "HTTP/1.0" };
+    private static final byte[][] KNOWN_METHOD_BYTES = asciiAll(KNOWN_METHODS);
+    private static final byte[][] KNOWN_VERSION_BYTES = asciiAll(KNOWN_VERSIONS);
+
+    private final int maxHeaderSize;
+    private final int maxBodySize;
+
+    private byte[] buf;
+    private int start; // início do pedido corrente
+    private int end;   // fim dos bytes válidos
+    private int scan;  // até onde já se procurou o fim dos headers
+
+    // estado do pedido corrente depois de os headers estarem completos
+    private int bodyStart = -1;
+    private int contentLength;
+    private String httpMethod;
+    private String path;
+    private String version;
+    private boolean connectionClose;
+    private boolean connectionKeepAlive;
+    private boolean acceptsEventStream;
+
+    public HttpRequestParser(int maxHeaderSize, int maxBodySize) {
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxBodySize = maxBodySize;
+        this.buf = new byte[Math.min(maxHeaderSize, 4096)];
+    }
+
+    /**
+     * Acrescenta ao buffer interno todos os bytes restantes de {@code src}.
+     */
+    public void feed(ByteBuffer src) {
+        int n = src.remaining();
+        ensureCapacity(n);
+        src.get(buf, end, n);
+        end += n;
+    }
+
+    public void feed(byte[] src, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(src, offset, buf, end, length);
+        end += length;
+    }
+
+    // existem bytes de um pedido ainda incompleto
+    public boolean hasPartialRequest() {
+        return end > start;
+    }
+
+    /**
+     * @return o próximo pedido completo, ou null se ainda faltarem bytes
+     * @throws BadRequestException se a linha de pedido ou os headers forem inválidos ou grandes demais, ou
+     *         se o tamanho do corpo for ambíguo (Content-Length repetido). Com Transfer-Encoding lança
+     *         {@link NotImplementedException}. Em ambos os casos a conexão deve ser fechada: não se sabe
+     *         onde acaba o corpo, e o resto dos bytes não pode ser lido como o pedido seguinte.
+     */
+    public HttpRequest next() throws BadRequestException {
+        if (bodyStart < 0) {
+            skipLeadingLineBreaks();
+            int headerEnd = findHeaderEnd();
+            if (headerEnd < 0) {
+                if (end - start > maxHeaderSize) {
+                    throw new BadRequestException("Headers excedem o tamanho máximo de " + maxHeaderSize + " bytes.");
+                }
+                return null;
+            }
+            parseHead(headerEnd);
+            bodyStart = headerEnd;
+        }
+
+        if (end - bodyStart < contentLength) {
+            return null; // corpo ainda incompleto
+        }
+
+        HttpRequest request = new HttpRequest(httpMethod, path, version, buf, bodyStart, contentLength,
+                HttpRequest.isKeepAlive(version, connectionClose, connectionKeepAlive), acceptsEventStream);
+
+        // o pedido seguinte começa logo a seguir; o buffer só é compactado no próximo feed
+        start = bodyStart + contentLength;
+        scan = start;
+        bodyStart = -1;
+        return request;
+    }
+
+    private void skipLeadingLineBreaks() {
+        if (start == end) {
+            start = end = scan = 0; // nada pendente: volta ao início do buffer
+            return;
+        }
+        while (start < end && (buf[start] == CR || buf[start] == LF)) {
+            start++;
+        }
+        if (scan < start) scan = start;
+    }
+
+    // índice do primeiro byte depois de "\r\n\r\n", ou -1
+    private int findHeaderEnd() {
+        for (int i = Math.max(scan, start + 3); i < end; i++) {
+            if (buf[i] == LF && buf[i - 1] == CR && buf[i - 2] == LF && buf[i - 3] == CR) {
+                return i + 1;
+            }
+        }
+        scan = Math.max(start, end - 3);
+        return -1;
+    }
+
+    private void parseHead(int headerEnd) throws BadRequestException {
+        // linha de pedido: "POST /messagestore/createGroup HTTP/1.1"
+        int lineEnd = indexOf(LF, start, headerEnd) - 1;
+        int sp1 = indexOf((byte) ' ', start, lineEnd);
+        int sp2 = sp1 < 0 ? -1 : indexOf((byte) ' ', sp1 + 1, lineEnd);
+        if (sp1 <= start) {
+            throw new BadRequestException("Linha de pedido inválida.");
+        }
+        httpMethod = known(KNOWN_METHODS, KNOWN_METHOD_BYTES, start, sp1);
+        if (sp2 < 0) {
+            path = new String(buf, sp1 + 1, lineEnd - sp1 - 1, StandardCharsets.UTF_8);
+            version = "HTTP/1.0";
+        } else {
+            path = new String(buf, sp1 + 1, sp2 - sp1 - 1, StandardCharsets.UTF_8);
+            version = known(KNOWN_VERSIONS, KNOWN_VERSION_BYTES, sp2 + 1, lineEnd);
+        }
+
+        contentLength = 0;
+        boolean contentLengthSeen = false;
+        connectionClose = false;
+        connectionKeepAlive = false;
+        acceptsEventStream = false;
+        int lineStart = lineEnd + 2;
+        while (lineStart < headerEnd - 2) {
+            int eol = indexOf(LF, lineStart, headerEnd) - 1;
+            int colon = indexOf((byte) ':', lineStart, eol);
+            if (colon > 0) {
+                if (buf[colon - 1] == ' ' || buf[colon - 1] == '\t') {
+                    // "Content-Length : 5" não seria reconhecido e o corpo passaria pelo pedido seguinte
+                    throw new BadRequestException("Espaço entre o nome do header e ':'.");
+                }
+                int valueStart = colon + 1;
+                while (valueStart < eol && buf[valueStart] == ' ') valueStart++;
+                int valueEnd = eol;
+                while (valueEnd > valueStart && buf[valueEnd - 1] == ' ') valueEnd--;
+
+                if (equalsIgnoreCase(lineStart, colon, CONTENT_LENGTH)) {
+                    if (contentLengthSeen) {
+                        throw new BadRequestException("Content-Length repetido.");
+                    }
+                    contentLength = parseContentLength(valueStart, valueEnd);
+                    contentLengthSeen = true;
+                } else if (equalsIgnoreCase(lineStart, colon, TRANSFER_ENCODING)) {
+                    // sem suporte a chunked, o corpo não teria fim conhecido
+                    throw new NotImplementedException("Transfer-Encoding não é suportado; envie o corpo com Content-Length.");
+                } else if (equalsIgnoreCase(lineStart, colon, CONNECTION)) {
+                    connectionClose = equalsIgnoreCase(valueStart, valueEnd, CLOSE);
+                    connectionKeepAlive = equalsIgnoreCase(valueStart, valueEnd, KEEP_ALIVE);
+                } else if (equalsIgnoreCase(lineStart, colon, ACCEPT)) {
+                    acceptsEventStream = containsIgnoreCase(valueStart, valueEnd, EVENT_STREAM);
+                }
+            }
+            lineStart = eol + 2;
+        }
+    }
+
+    private int parseContentLength(int from, int to) throws BadRequestException {
+        if (from == to) throw new BadRequestException("Content-Length vazio.");
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) throw new BadRequestException("Content-Length inválido.");
+            value = value * 10 + digit;
+            if (value > maxBodySize) {
+                throw new BadRequestException("Corpo excede o tamanho máximo de " + maxBodySize + " bytes.");
+            }
+        }
+        return (int) value;
+    }
+
+    // devolve a constante correspondente aos bytes, ou uma String nova se não for conhecida
+    private String known(String[] values, byte[][] bytes, int from, int to) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (equalsExact(from, to, bytes[i])) return values[i];
+        }
+        return new String(buf, from, to - from, StandardCharsets.US_ASCII);
+    }
+
+    private boolean equalsExact(int from, int to, byte[] value) {
+        if (to - from != value.length) return false;
+        for (int i = 0; i < value.length; i++) {
+            if (buf[from + i] != value[i]) return false;
+        }
+        return true;
+    }
+
+    // compara sem distinguir maiúsculas, sem alocar; lowerValue já deve estar em minúsculas
+    private boolean equalsIgnoreCase(int from, int to, byte[] lowerValue) {
+        if (to - from != lowerValue.length) return false;
+        for (int i = 0; i < lowerValue.length; i++) {
+            byte b = buf[from + i];
+            if (b >= 'A' && b <= 'Z') b += 32;
+            if (b != lowerValue[i]) return false;
+        }
+        return true;
+    }
+
+    private boolean containsIgnoreCase(int from, int to, byte[] lowerValue) {
+        for (int i = from; i + lowerValue.length <= to; i++) {
+            if (equalsIgnoreCase(i, i + lowerValue.length, lowerValue)) return true;
+        }
+        return false;
+    }
+
+    private int indexOf(byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (end + extra <= buf.length) return;
+
+        // primeiro tenta recuperar o espaço já consumido no início do buffer
+        int live = end - start;
+        if (start > 0 && live + extra <= buf.length) {
+            System.arraycopy(buf, start, buf, 0, live);
+        } else {
+            byte[] bigger = new byte[Math.max(buf.length * 2, live + extra)];
+            System.arraycopy(buf, start, bigger, 0, live);
+            buf = bigger;
+        }
+        if (bodyStart >= 0) bodyStart -= start;
+        scan -= start;
+        end = live;
+        start = 0;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[][] asciiAll(String[] values) {
+        byte[][] out = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) out[i] = ascii(values[i]);
+        return out;
+    }
+}
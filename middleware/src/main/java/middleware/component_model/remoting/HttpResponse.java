@@ -0,0 +1,128 @@
+package middleware.component_model.remoting;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import middleware.streaming.QueuedEventSink;
+
+/**
+ * Resposta HTTP produzida pelo RequestDispatcher, independente do transporte.
+ * O corpo é uma fatia de bytes (normalmente o ResponseBuffer onde o Marshaller escreveu),
+ * enviada tal como está, sem passar por String.
+ */
+public class HttpResponse {
+
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+    private static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream; charset=UTF-8";
+
+    private final int statusCode;
+    private final String statusMessage;
+    private final byte[] body;
+    private final int bodyLength;
+    private final Map<String, String> headers = new LinkedHashMap<>(); // headers extra, ex.: Retry-After
+    private String contentType = JSON_CONTENT_TYPE;
+    private QueuedEventSink eventStream; // corpo de uma resposta Server-Sent Events, ou null
+
+    public HttpResponse(int statusCode, String statusMessage, byte[] body, int bodyLength) {
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.body = body;
+        this.bodyLength = bodyLength;
+    }
+
+    public HttpResponse(int statusCode, String statusMessage, String body) {
+        this(statusCode, statusMessage, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HttpResponse(int statusCode, String statusMessage, byte[] body) {
+        this(statusCode, statusMessage, body, body.length);
+    }
+
+    /**
+     * Resposta 200 cujo corpo são os eventos do sink, enviados à medida que chegam.
+     * Não tem Content-Length: o stream termina quando a conexão fecha.
+     */
+    public static HttpResponse eventStream(QueuedEventSink sink) {
+        HttpResponse response = new HttpResponse(200, "OK", new byte[0], 0)
+                .setContentType(EVENT_STREAM_CONTENT_TYPE)
+                .setHeader("Cache-Control", "no-cache");
+        response.eventStream = sink;
+        return response;
+    }
+
+    public int getStatusCode() { return statusCode; }
+    public String getStatusMessage() { return statusMessage; }
+    public byte[] getBody() { return body; }
+    public int getBodyLength() { return bodyLength; }
+    public QueuedEventSink getEventStream() { return eventStream; }
+
+    public HttpResponse setContentType(String contentType) {
+        this.contentType = contentType;
+        return this;
+    }
+
+    public HttpResponse setHeader(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    /**
+     * Escreve status, headers e corpo no stream.
+     * O corpo é escrito sem quebra de linha final: com conexões persistentes
+     * qualquer byte além do Content-Length seria lido como início do próximo pedido.
+     *
+     * @param keepAlive          se a conexão continua aberta depois desta resposta
+     * @param keepAliveTimeoutMs tempo ocioso anunciado no header Keep-Alive
+     * @param remainingRequests  pedidos que ainda podem ser feitos nesta conexão
+     */
+    public void writeTo(OutputStream out, boolean keepAlive, int keepAliveTimeoutMs, int remainingRequests) throws IOException {
+        out.write(encodeHead(keepAlive, keepAliveTimeoutMs, remainingRequests));
+        out.write(body, 0, bodyLength);
+    }
+
+    // só status e headers (inclui a linha em branco); o corpo segue à parte
+    public byte[] encodeHead(boolean keepAlive, int keepAliveTimeoutMs, int remainingRequests) {
+        StringBuilder head = new StringBuilder(160);
+        appendStatusAndHeaders(head, statusCode, statusMessage, contentType, headers);
+        if (eventStream != null) {
+            // um stream ocupa a conexão até ao fim
+            appendConnection(head, false, keepAliveTimeoutMs, remainingRequests);
+            return head.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        head.append("Content-Length: ").append(bodyLength).append("\r\n");
+        appendConnection(head, keepAlive, keepAliveTimeoutMs, remainingRequests);
+        return head.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Headers de uma resposta 200 cujo corpo segue em chunks (tamanho desconhecido à partida).
+     */
+    public static void writeChunkedHead(OutputStream out, boolean keepAlive, int keepAliveTimeoutMs, int remainingRequests) throws IOException {
+        StringBuilder head = new StringBuilder(160);
+        appendStatusAndHeaders(head, 200, "OK", JSON_CONTENT_TYPE, Map.of());
+        head.append("Transfer-Encoding: chunked\r\n");
+        appendConnection(head, keepAlive, keepAliveTimeoutMs, remainingRequests);
+        out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendStatusAndHeaders(StringBuilder head, int statusCode, String statusMessage, String contentType, Map<String, String> headers) {
+        head.append("HTTP/1.1 ").append(statusCode).append(' ').append(statusMessage).append("\r\n");
+        head.append("Content-Type: ").append(contentType).append("\r\n");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+    }
+
+    private static void appendConnection(StringBuilder head, boolean keepAlive, int keepAliveTimeoutMs, int remainingRequests) {
+        if (keepAlive) {
+            head.append("Connection: keep-alive\r\n");
+            head.append("Keep-Alive: timeout=").append(keepAliveTimeoutMs / 1000).append(", max=").append(remainingRequests).append("\r\n");
+        } else {
+            head.append("Connection: close\r\n");
+        }
+        head.append("\r\n"); // Linha em branco
+    }
+}
@@ -1,16 +1,33 @@
 package middleware.component_model.remoting;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
+import middleware.admission.ConcurrencyLimiter;
+import middleware.caching.CacheBinding;
+import middleware.caching.CacheKey;
+import middleware.caching.ResponseCache;
 import middleware.component_model.identification.AbsoluteObjectReference;
 import middleware.component_model.identification.Lookup;
+import middleware.exceptions.BadRequestException;
+import middleware.exceptions.RemoteInvocationException;
 import middleware.exceptions.RouteNotFoundException;
+import middleware.exceptions.ServiceUnavailableException;
 import middleware.extension.InvocationContext;
 import middleware.extension.InvocationInterceptor;
+import middleware.lifecycle.InstanceScope;
 import middleware.lifecycle.LifecycleManager;
 import middleware.lifecycle.annotations.LifecyclePolicyType;
+import middleware.streaming.EventSink;
+import middleware.streaming.EventStreamBinding;
 import middleware.util.Log;
 
 
@@ -22,14 +39,38 @@ public class Invoker {
     private final Marshaller marshaller;
     private final LifecycleManager lifecycleManager;
     private final List<InvocationInterceptor> interceptors = new ArrayList<>();
+    private final ConcurrencyLimiter admissionLimiter; // limite global de invocações em curso, ou null
+    private final ResponseCache responseCache;         // respostas das rotas @Cacheable, ou null
 
     public Invoker(Lookup lookup, LifecycleManager lifecycleManager) {
+        this(lookup, lifecycleManager, null);
+    }
+
+    public Invoker(Lookup lookup, LifecycleManager lifecycleManager, ConcurrencyLimiter admissionLimiter) {
+        this(lookup, lifecycleManager, admissionLimiter, null);
+    }
+
+    public Invoker(Lookup lookup, LifecycleManager lifecycleManager, ConcurrencyLimiter admissionLimiter, ResponseCache responseCache) {
         this.lookup = lookup;
         this.lifecycleManager = lifecycleManager;
+        this.admissionLimiter = admissionLimiter;
+        this.responseCache = responseCache;
         // Instancia o Marshaller que usa Jackson
         this.marshaller = new JsonMarshaller();
     }
 
+    public Marshaller getMarshaller() {
+        return marshaller;
+    }
+
+    /**
+     * @param fullPath o alvo do pedido; a query string não conta para escolher a rota
+     * @return a rota que corresponde ao pedido, ou null se não há nenhuma
+     */
+    public AbsoluteObjectReference find(String httpMethod, String fullPath) {
+        return lookup.find(httpMethod, fullPath);
+    }
+
     public void addInterceptor(InvocationInterceptor interceptor) {
         this.interceptors.add(interceptor);
         Log.info("Invoker", "Interceptor registrado: %s", interceptor.getClass().getSimpleName());
@@ -45,35 +86,189 @@ public class Invoker {
      * @throws Exception se o método não for encontrado, ou se a invocação falhar
      */
     public String invoke(String httpMethod, String fullPath, String requestBody) throws Exception {
+        byte[] body = requestBody == null ? new byte[0] : requestBody.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletionStage<Void> pending = invoke(httpMethod, fullPath, body, 0, body.length, out);
+        if (pending != null) {
+            try {
+                pending.toCompletableFuture().join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lida com uma requisição cujo corpo é uma fatia de bytes recebida pelo transporte.
+     * Os bytes são entregues ao Marshaller sem passarem por String, e o resultado é
+     * serializado diretamente em {@code responseBody}.
+     *
+     * Se o método remoto devolver um {@link CompletionStage}, a invocação termina mais tarde: o
+     * resultado é serializado (e os interceptors 'after' correm) na thread que completar o stage.
+     * As vagas de admissão são libertadas logo que o método retorna, por isso um pedido à espera
+     * de resultado (ex.: long-polling) não ocupa capacidade.
+     *
+     * @return null se o resultado já está em {@code responseBody}; senão um stage que completa quando
+     *         estiver (ou falha com a mesma exceção que a versão síncrona lançaria)
+     * @throws ServiceUnavailableException se não houver capacidade para mais invocações (global ou da rota)
+     * @throws Exception se o método não for encontrado, ou se a invocação falhar
+     */
+    public CompletionStage<Void> invoke(String httpMethod, String fullPath, byte[] body, int offset, int length, OutputStream responseBody) throws Exception {
+        return invoke(httpMethod, fullPath, body, offset, length, responseBody, null);
+    }
+
+    /**
+     * Como {@link #invoke(String, String, byte[], int, int, OutputStream)}, para rotas @EventStream:
+     * o {@code sink} é entregue ao método no parâmetro EventSink e nada é escrito em {@code responseBody}.
+     *
+     * @throws BadRequestException se a rota é um stream de eventos e não foi dado um sink
+     */
+    public CompletionStage<Void> invoke(String httpMethod, String fullPath, byte[] body, int offset, int length,
+                                        OutputStream responseBody, EventSink sink) throws Exception {
+        return invoke(httpMethod, fullPath, body, offset, length, responseBody, sink, null);
+    }
+
+    /**
+     * Como {@link #invoke(String, String, byte[], int, int, OutputStream, EventSink)}, dentro de um
+     * âmbito (a conexão, ou um envelope multi-invoke) onde ficam as instâncias dos componentes SCOPED.
+     */
+    public CompletionStage<Void> invoke(String httpMethod, String fullPath, byte[] body, int offset, int length,
+                                        OutputStream responseBody, EventSink sink, InstanceScope scope) throws Exception {
+        return invoke(find(httpMethod, fullPath), httpMethod, fullPath, body, offset, length, responseBody, sink, scope);
+    }
+
+    /**
+     * Como {@link #invoke(String, String, byte[], int, int, OutputStream, EventSink, InstanceScope)}, para
+     * uma rota já resolvida com {@link #find(String, String)} (o RequestDispatcher resolve-a uma vez por pedido).
+     *
+     * @param absoluteObject a rota, ou null se nenhuma corresponde ao pedido
+     * @throws RouteNotFoundException se {@code absoluteObject} é null
+     */
+    public CompletionStage<Void> invoke(AbsoluteObjectReference absoluteObject, String httpMethod, String fullPath, byte[] body, int offset, int length,
+                                        OutputStream responseBody, EventSink sink, InstanceScope scope) throws Exception {
+        if (absoluteObject == null) {
+            throw new RouteNotFoundException("Nenhum método remoto encontrado para: " + httpMethod + ":" + fullPath);
+        }
 
         InvocationContext context = new InvocationContext();
         context.setHttpMethod(httpMethod);
         context.setFullPath(fullPath);
-        context.setRequestBody(requestBody);
+        context.setRequestBody(body, offset, length);
+        context.setScope(scope);
+        context.setAbsoluteObjectReference(absoluteObject);
 
-        // chave de busca. Ex.: "POST:/messagestore/createGroup"
-        String lookupKey = httpMethod + ":" + fullPath;
+        EventStreamBinding eventStream = absoluteObject.getEventStream();
+        if (eventStream != null && sink == null) {
+            throw new BadRequestException("Esta rota é um stream de eventos; envie Accept: text/event-stream.");
+        }
 
-        AbsoluteObjectReference absoluteObject  = lookup.find(lookupKey);
+        // um acerto no cache não passa pela admissão, pelo objeto remoto nem pelo Marshaller
+        CacheBinding cache = responseCache != null ? absoluteObject.getCache() : null;
+        CacheKey cacheKey = null;
+        long[] cacheStamp = null;
+        if (cache != null && cache.isCacheable()) {
+            cacheKey = CacheKey.of(cacheRoute(absoluteObject, httpMethod, fullPath), body, offset, length);
+            byte[] cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                responseBody.write(cached);
+                return null;
+            }
+            cacheStamp = responseCache.stamp();
+        }
 
-        if (absoluteObject == null) {
-            throw new RouteNotFoundException("Nenhum método remoto encontrado para: " + lookupKey);
+        // controlo de admissão: global primeiro, depois componente e rota
+        int inFlightAtStart = admissionLimiter != null ? admissionLimiter.acquire() : 0;
+        long start = System.nanoTime();
+        int acquired = 0;
+        try {
+            acquireRouteLimiter(absoluteObject.getComponentLimiter());
+            acquired++;
+            acquireRouteLimiter(absoluteObject.getRouteLimiter());
+            acquired++;
+
+            if (cache == null) {
+                return doInvoke(context, absoluteObject, body, offset, length, responseBody, sink);
+            }
+            return invokeCaching(context, absoluteObject, body, offset, length, responseBody, sink, cache, cacheKey, cacheStamp);
+
+        } finally {
+            long latency = System.nanoTime() - start;
+            if (acquired > 1) releaseRouteLimiter(absoluteObject.getRouteLimiter(), latency);
+            if (acquired > 0) releaseRouteLimiter(absoluteObject.getComponentLimiter(), latency);
+            if (admissionLimiter != null) admissionLimiter.release(latency, inFlightAtStart);
         }
+    }
 
-        context.setAbsoluteObjectReference(absoluteObject);
+    // Como doInvoke, numa rota com cache: guarda a resposta serializada (@Cacheable) e invalida
+    // as tags da rota (@CacheEvict) quando a invocação termina, mesmo que seja mais tarde.
+    private CompletionStage<Void> invokeCaching(InvocationContext context, AbsoluteObjectReference absoluteObject,
+                                                byte[] body, int offset, int length, OutputStream responseBody, EventSink sink,
+                                                CacheBinding cache, CacheKey cacheKey, long[] cacheStamp) throws Exception {
+        CapturingOutputStream captured = cacheKey != null ? new CapturingOutputStream(responseBody) : null;
+        CompletionStage<Void> pending;
+        try {
+            pending = doInvoke(context, absoluteObject, body, offset, length, captured != null ? captured : responseBody, sink);
+        } catch (Exception e) {
+            updateCache(cache, context, cacheKey, cacheStamp, null);
+            throw e;
+        }
+
+        if (pending == null) {
+            updateCache(cache, context, cacheKey, cacheStamp, captured);
+            return null;
+        }
+        return pending.whenComplete((ignored, failure) ->
+                updateCache(cache, context, cacheKey, cacheStamp, failure == null ? captured : null));
+    }
+
+    // captured é null se a invocação falhou: nada é guardado, mas a invalidação acontece na mesma
+    private void updateCache(CacheBinding cache, InvocationContext context, CacheKey cacheKey, long[] cacheStamp,
+                             CapturingOutputStream captured) {
+        Object[] args = context.getMethodParameters();
+        if (args == null) return; // falhou antes de ler o corpo
+        try {
+            if (cache.isEvicting()) {
+                responseCache.invalidate(cache.evictTags(args));
+            }
+            if (captured != null && cacheKey != null) {
+                responseCache.put(cacheKey, captured.toByteArray(), cache.getTtlMs(), cache.cacheTags(args), cacheStamp);
+            }
+        } catch (RuntimeException e) {
+            Log.error("Invoker", "Erro ao atualizar o cache de respostas: " + e.getMessage(), e);
+        }
+    }
+
+    private CompletionStage<Void> doInvoke(InvocationContext context, AbsoluteObjectReference absoluteObject,
+                                           byte[] body, int offset, int length, OutputStream responseBody, EventSink sink) throws Exception {
 
         Object targetObject = null;
         LifecyclePolicyType policy = absoluteObject.getPolicyType();
 
+        // o ComponentScanner já preparou o plano; só referências criadas à mão chegam aqui sem ele
+        MethodBinding binding = absoluteObject.getBinding() != null
+                ? absoluteObject.getBinding()
+                : marshaller.bind(absoluteObject.getMethod());
+
         try {
 
-            targetObject = lifecycleManager.getInstance(absoluteObject);
+            targetObject = lifecycleManager.getInstance(absoluteObject, context.getScope());
             Method targetMethod = absoluteObject.getMethod();
             context.setTargetObject(targetObject);
 
              // deserializa o corpo da requisição para os parâmetros do método
-            Object[] args = marshaller.unmarshal(requestBody, targetMethod);
+            Object[] args = marshaller.unmarshal(body, offset, length, binding);
+            RouteBinding route = absoluteObject.getRoute();
+            if (route != null && route.hasParameters()) {
+                route.bind(context.getFullPath(), args);
+            }
+            if (absoluteObject.getEventStream() != null) {
+                args[absoluteObject.getEventStream().getSinkIndex()] = sink;
+            }
             context.setMethodParameters(args);
+            if (absoluteObject.getBatch() != null) {
+                context.setBatch(batchItems(absoluteObject.getBatch(), args));
+            }
 
             Log.info("Invoker", "Executando 'beforeInvocation' interceptors");
             for (InvocationInterceptor interceptor : interceptors) {
@@ -83,26 +278,23 @@ public class Invoker {
             Object[] processedArgs = context.getMethodParameters();
 
             // Invocar o método
-            Log.info("Invoker", "Invocando método: %s no objeto: %s (Política: %s, Instância: %d)", targetMethod.getName(), targetObject.getClass().getSimpleName(), policy, targetObject.hashCode());
+            if (Log.isInfoEnabled()) {
+                Log.info("Invoker", "Invocando método: %s no objeto: %s (Política: %s, Instância: %d)", targetMethod.getName(), targetObject.getClass().getSimpleName(), policy, targetObject.hashCode());
+            }
 
-            Object result = targetMethod.invoke(targetObject, processedArgs);
-            context.setResult(result);
+            Object result = invokeTarget(absoluteObject, targetObject, processedArgs);
 
-            Log.info("Invoker", "Executando 'afterInvocation' interceptors . . . SUCESSO");
-            for (InvocationInterceptor interceptor : interceptors) {
-                interceptor.afterInvocation(context);
+            if (result instanceof CompletionStage<?> pending) {
+                CompletionStage<Void> completion = completeLater(context, pending, binding, responseBody, targetObject, policy);
+                targetObject = null; // devolvido ao pool só quando o resultado chegar
+                return completion;
             }
 
-            // Serializar resultado
-            return marshaller.marshal(result);
+            complete(context, result, binding, responseBody);
+            return null;
 
         } catch (Exception e) {
-            context.setException(e);
-
-            Log.info("Invoker", "Executando 'afterInvocation' interceptors . . . ERRO");
-            for (InvocationInterceptor interceptor : interceptors) {
-                interceptor.afterInvocation(context);
-            }
+            fail(context, e);
             throw e;
 
         } finally {
@@ -111,4 +303,133 @@ public class Invoker {
             }
         }
     }
+
+    private void complete(InvocationContext context, Object result, MethodBinding binding, OutputStream responseBody) throws Exception {
+        context.setResult(result);
+
+        Log.info("Invoker", "Executando 'afterInvocation' interceptors . . . SUCESSO");
+        for (InvocationInterceptor interceptor : interceptors) {
+            interceptor.afterInvocation(context);
+        }
+
+        // Serializar resultado (num stream de eventos a resposta são os eventos do sink)
+        if (context.getAbsoluteObjectReference().getEventStream() == null) {
+            marshaller.marshal(result, binding, responseBody);
+        }
+    }
+
+    private void fail(InvocationContext context, Exception e) {
+        context.setException(e);
+
+        Log.info("Invoker", "Executando 'afterInvocation' interceptors . . . ERRO");
+        for (InvocationInterceptor interceptor : interceptors) {
+            interceptor.afterInvocation(context);
+        }
+    }
+
+    // Termina a invocação quando o resultado assíncrono do método remoto chegar.
+    private CompletionStage<Void> completeLater(InvocationContext context, CompletionStage<?> pending, MethodBinding binding,
+                                                OutputStream responseBody, Object targetObject, LifecyclePolicyType policy) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        pending.whenComplete((result, failure) -> {
+            try {
+                if (failure != null) {
+                    // tal como na chamada síncrona, falhas da lógica de negócio saem como RemoteInvocationException
+                    Throwable cause = unwrap(failure);
+                    throw cause instanceof Exception exception && !(cause instanceof RemoteInvocationException)
+                            && !(cause instanceof ServiceUnavailableException)
+                            ? new RemoteInvocationException(exception)
+                            : cause;
+                }
+                complete(context, result, binding, responseBody);
+                completion.complete(null);
+            } catch (Throwable t) {
+                if (t instanceof Exception e) fail(context, e);
+                completion.completeExceptionally(t);
+            } finally {
+                lifecycleManager.returnInstanceToPool(targetObject, policy);
+            }
+        });
+        return completion;
+    }
+
+    private static Exception unwrap(CompletionException e) {
+        Throwable cause = unwrap((Throwable) e);
+        if (cause instanceof Exception exception) return exception;
+        if (cause instanceof Error error) throw error;
+        return e;
+    }
+
+    // tira as camadas de CompletionException que os stages acrescentam
+    static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    // Chama o método remoto pelo MethodHandle pré-compilado. Exceções da lógica de negócio
+    // saem como RemoteInvocationException; Errors e sobrecarga do serviço (503) propagam-se tal como estão.
+    private static Object invokeTarget(AbsoluteObjectReference absoluteObject, Object targetObject, Object[] args) throws Exception {
+        try {
+            return (Object) absoluteObject.getMethodHandle().invokeExact(targetObject, args);
+        } catch (Error | ServiceUnavailableException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RemoteInvocationException(t);
+        }
+    }
+
+    // numa rota com variáveis ou @QueryParam a resposta depende do alvo concreto, não só do corpo
+    private static String cacheRoute(AbsoluteObjectReference absoluteObject, String httpMethod, String fullPath) {
+        RouteBinding route = absoluteObject.getRoute();
+        if (route != null && !route.hasParameters()) return route.getKey();
+        return httpMethod + ":" + fullPath;
+    }
+
+    // a lista do lote, validada antes de os interceptadores a verem
+    private static List<?> batchItems(BatchBinding batch, Object[] args) throws BadRequestException {
+        if (!(args[batch.getItemsIndex()] instanceof List<?> items)) {
+            throw new BadRequestException("O corpo desta rota deve ser uma lista JSON.");
+        }
+        if (items.size() > batch.getMaxItems()) {
+            throw new BadRequestException("Lote com " + items.size() + " itens; o máximo é " + batch.getMaxItems() + ".");
+        }
+        return items;
+    }
+
+    // escreve no destino e guarda uma cópia dos bytes para o cache
+    private static final class CapturingOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CapturingOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            copy.write(b, off, len);
+        }
+
+        byte[] toByteArray() {
+            return copy.toByteArray();
+        }
+    }
+
+    private static void acquireRouteLimiter(ConcurrencyLimiter limiter) throws ServiceUnavailableException {
+        if (limiter != null) limiter.acquire();
+    }
+
+    private static void releaseRouteLimiter(ConcurrencyLimiter limiter, long latencyNanos) {
+        if (limiter != null) limiter.release(latencyNanos, 0);
+    }
 }
@@ -1,10 +1,21 @@
 package middleware.component_model.remoting;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import middleware.component_model.annotations.RequestBody;
 
+import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 public class JsonMarshaller implements Marshaller {
 
@@ -13,52 +24,81 @@ public class JsonMarshaller implements Marshaller {
 
     public JsonMarshaller() {
         this.objectMapper = new ObjectMapper();
+        // o stream de saída pertence ao transporte
+        this.objectMapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // datas (ex.: LocalDateTime) em ISO-8601
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
     }
 
     @Override
-    public Object[] unmarshal(String requestBody, Method method) throws Exception {
+    public MethodBinding bind(Method method) {
         Parameter[] parameters = method.getParameters();
-        Object[] args = new Object[parameters.length];
-
-        if (parameters.length == 0) {
-            return args; // método sem parâmetros
-        }
 
         // busca pelo parâmetro anotado com @RequestBody
-        Parameter bodyParam = null;
-        for (Parameter param : parameters) {
-            if (param.isAnnotationPresent(RequestBody.class)) {
-                bodyParam = param;
+        int bodyIndex = -1;
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isAnnotationPresent(RequestBody.class)) {
+                bodyIndex = i;
                 break;
             }
         }
 
-        // se encontrou um @RequestBody, faz o mapeamento
-        if (bodyParam != null) {
-            if (requestBody == null || requestBody.isEmpty()) {
-                throw new Exception("Request body is missing for parameter annotated with @RequestBody.");
-            }
+        // o tipo genérico completo permite ler, por exemplo, List<AlgumDTO>
+        ObjectReader reader = bodyIndex >= 0
+                ? objectMapper.readerFor(objectMapper.constructType(parameters[bodyIndex].getParameterizedType()))
+                : null;
 
-            Class<?> paramType = bodyParam.getType(); // Ex: Usuario.class
+        return new JsonMethodBinding(parameters.length, bodyIndex, reader, writerFor(method));
+    }
 
-            // JACKSON: Converte a string JSON num objeto do tipo 'paramType'
-            Object mappedObject = objectMapper.readValue(requestBody, paramType);
+    // Um writer fixo no tipo declarado só é seguro quando o valor real não pode ser uma subclasse com mais campos.
+    // Num método assíncrono o que se serializa é o valor do CompletionStage, não o próprio stage.
+    private ObjectWriter writerFor(Method method) {
+        JavaType type = objectMapper.constructType(method.getGenericReturnType());
+        if (CompletionStage.class.isAssignableFrom(type.getRawClass())) {
+            JavaType[] parameters = type.findTypeParameters(CompletionStage.class);
+            type = parameters.length == 1 ? parameters[0] : objectMapper.constructType(Object.class);
+        }
 
-            for (int i = 0; i < parameters.length; i++) {
-                if (parameters[i].isAnnotationPresent(RequestBody.class)) {
-                    args[i] = mappedObject;
-                } else {
-                    args[i] = null;
-                }
-            }
+        Class<?> returnType = type.getRawClass();
+        boolean staticType = returnType.isPrimitive()
+                || Modifier.isFinal(returnType.getModifiers())
+                || Collection.class.isAssignableFrom(returnType)
+                || Map.class.isAssignableFrom(returnType);
+
+        if (returnType == void.class || returnType == Void.class || !staticType) {
+            return objectMapper.writer();
         }
+        return objectMapper.writerFor(type);
+    }
 
+    @Override
+    public Object[] unmarshal(byte[] body, int offset, int length, MethodBinding binding) throws Exception {
+        JsonMethodBinding plan = (JsonMethodBinding) binding;
+        Object[] args = new Object[plan.parameterCount];
+
+        if (plan.bodyIndex < 0) {
+            return args; // método sem parâmetros, ou sem @RequestBody
+        }
+
+        if (body == null || length == 0) {
+            throw new Exception("Request body is missing for parameter annotated with @RequestBody.");
+        }
+
+        // JACKSON: Converte os bytes JSON num objeto do tipo do parâmetro
+        args[plan.bodyIndex] = plan.reader.readValue(body, offset, length);
         return args;
     }
 
     @Override
-    public String marshal(Object result) throws Exception {
-        // converte o objeto de resultado em uma string JSON
-        return objectMapper.writeValueAsString(result);
+    public void marshal(Object result, MethodBinding binding, OutputStream out) throws Exception {
+        // escreve o JSON do resultado diretamente no stream
+        ((JsonMethodBinding) binding).writer.writeValue(out, result);
+    }
+
+    @Override
+    public void marshalValue(Object value, OutputStream out) throws Exception {
+        objectMapper.writeValue(out, value);
     }
 }
@@ -0,0 +1,20 @@
+package middleware.component_model.remoting;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+// Plano do JsonMarshaller: onde fica o @RequestBody e os leitores/escritores Jackson já resolvidos.
+final class JsonMethodBinding implements MethodBinding {
+
+    final int parameterCount;
+    final int bodyIndex;        // índice do parâmetro @RequestBody, ou -1
+    final ObjectReader reader;  // para o tipo do @RequestBody, ou null
+    final ObjectWriter writer;  // para o tipo de retorno
+
+    JsonMethodBinding(int parameterCount, int bodyIndex, ObjectReader reader, ObjectWriter writer) {
+        this.parameterCount = parameterCount;
+        this.bodyIndex = bodyIndex;
+        this.reader = reader;
+        this.writer = writer;
+    }
+}
@@ -1,10 +1,42 @@
 package middleware.component_model.remoting;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 
 public interface Marshaller {
 
-    Object[] unmarshal(String requestBody, Method method) throws Exception;
-    
-    String marshal(Object result) throws Exception;
+    /**
+     * Prepara, uma única vez por rota, tudo o que a (de)serialização do método precisa.
+     */
+    MethodBinding bind(Method method);
+
+    /**
+     * Converte o corpo do pedido nos argumentos do método, lendo diretamente a fatia de bytes
+     * recebida pelo transporte (sem passar por String).
+     */
+    Object[] unmarshal(byte[] body, int offset, int length, MethodBinding binding) throws Exception;
+
+    /**
+     * Serializa o resultado diretamente no stream de saída (normalmente um ResponseBuffer),
+     * sem criar uma String intermédia. Não fecha o stream.
+     */
+    void marshal(Object result, MethodBinding binding, OutputStream out) throws Exception;
+
+    /**
+     * Serializa um valor avulso, sem plano de método (ex.: os dados de um evento de stream).
+     */
+    void marshalValue(Object value, OutputStream out) throws Exception;
+
+    default Object[] unmarshal(String requestBody, Method method) throws Exception {
+        byte[] body = requestBody == null ? new byte[0] : requestBody.getBytes(StandardCharsets.UTF_8);
+        return unmarshal(body, 0, body.length, bind(method));
+    }
+
+    default String marshal(Object result, Method method) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        marshal(result, bind(method), out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
 }
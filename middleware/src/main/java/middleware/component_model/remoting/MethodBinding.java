@@ -0,0 +1,9 @@
+package middleware.component_model.remoting;
+
+/**
+ * Plano de (de)serialização de um método remoto, preparado pelo Marshaller no registo da rota.
+ * Guardado na AbsoluteObjectReference para que reflexão e resolução de tipos fiquem fora do
+ * caminho de cada pedido. O conteúdo é específico de cada implementação de Marshaller.
+ */
+public interface MethodBinding {
+}
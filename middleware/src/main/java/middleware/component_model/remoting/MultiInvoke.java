@@ -0,0 +1,106 @@
+package middleware.component_model.remoting;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import middleware.exceptions.BadRequestException;
+
+/**
+ * Envelope multi-invoke: várias chamadas num só pedido HTTP.
+ *
+ *   {"mode": "parallel" | "sequential", "calls": [{"method": "GET", "path": "/x/y", "body": {...}}, ...]}
+ *
+ * A resposta é uma lista com um resultado por chamada, pela ordem do pedido:
+ *
+ *   [{"status": 200, "body": ...}, {"status": 404, "body": {"error": "..."}}, ...]
+ *
+ * Cada "body" da resposta é o JSON que a chamada devolveria sozinha (null se vazio).
+ */
+final class MultiInvoke {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final byte[] EMPTY = new byte[0];
+
+    record Call(String method, String path, byte[] body) {}
+
+    private final boolean sequential;
+    private final List<Call> calls;
+
+    private MultiInvoke(boolean sequential, List<Call> calls) {
+        this.sequential = sequential;
+        this.calls = calls;
+    }
+
+    /**
+     * @throws BadRequestException se o envelope não for válido ou tiver mais de {@code maxCalls} chamadas
+     */
+    static MultiInvoke parse(byte[] buffer, int offset, int length, int maxCalls) throws BadRequestException {
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(buffer, offset, length);
+        } catch (IOException e) {
+            throw new BadRequestException("Envelope multi-invoke com JSON inválido.");
+        }
+        if (root == null || !root.path("calls").isArray()) {
+            throw new BadRequestException("O envelope multi-invoke precisa de uma lista 'calls'.");
+        }
+
+        JsonNode modeNode = root.path("mode");
+        String mode = modeNode.isMissingNode() || modeNode.isNull() ? "parallel" : modeNode.asText();
+        if (!mode.equals("parallel") && !mode.equals("sequential")) {
+            throw new BadRequestException("Modo multi-invoke desconhecido: '" + mode + "'.");
+        }
+
+        JsonNode items = root.get("calls");
+        if (items.size() > maxCalls) {
+            throw new BadRequestException("Envelope com " + items.size() + " chamadas; o máximo é " + maxCalls + ".");
+        }
+
+        List<Call> calls = new ArrayList<>(items.size());
+        for (JsonNode item : items) {
+            String method = item.path("method").textValue();
+            String path = item.path("path").textValue();
+            if (method == null || path == null || !path.startsWith("/")) {
+                throw new BadRequestException("Cada chamada precisa de 'method' e 'path'.");
+            }
+            JsonNode body = item.get("body");
+            try {
+                calls.add(new Call(method.toUpperCase(), path, body == null || body.isNull() ? EMPTY : MAPPER.writeValueAsBytes(body)));
+            } catch (IOException e) {
+                throw new BadRequestException("Corpo inválido na chamada para " + path + ".");
+            }
+        }
+        return new MultiInvoke(mode.equals("sequential"), calls);
+    }
+
+    boolean isSequential() {
+        return sequential;
+    }
+
+    List<Call> getCalls() {
+        return calls;
+    }
+
+    // junta as respostas das chamadas num só corpo JSON; os corpos já são JSON e são copiados tal como estão
+    static void writeResults(List<HttpResponse> responses, OutputStream out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < responses.size(); i++) {
+            HttpResponse response = responses.get(i);
+            if (i > 0) out.write(',');
+            out.write(("{\"status\":" + response.getStatusCode() + ",\"body\":").getBytes(StandardCharsets.US_ASCII));
+            if (response.getBodyLength() > 0) {
+                out.write(response.getBody(), 0, response.getBodyLength());
+            } else {
+                out.write("null".getBytes(StandardCharsets.US_ASCII));
+            }
+            out.write('}');
+        }
+        out.write(']');
+    }
+}
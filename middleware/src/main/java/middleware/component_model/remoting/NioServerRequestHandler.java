@@ -0,0 +1,488 @@
+package middleware.component_model.remoting;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import middleware.MiddlewareConfig;
+import middleware.exceptions.BadRequestException;
+import middleware.lifecycle.InstanceScope;
+import middleware.lifecycle.pooling.ObjectPool;
+import middleware.metrics.MetricsRegistry;
+import middleware.streaming.QueuedEventSink;
+import middleware.util.Log;
+
+/**
+ * Transporte não-bloqueante: um número fixo de event loops (cada um com o seu Selector) trata
+ * de todas as conexões abertas, e só a invocação em si corre num pool limitado de workers.
+ * Assim o número de threads não cresce com o número de conexões.
+ */
+public class NioServerRequestHandler implements ServerTransport, Runnable {
+
+    // intervalo máximo entre verificações de conexões ociosas em cada event loop
+    private static final long SELECT_TIMEOUT_MS = 1000;
+    private static final int RESPONSE_BUFFER_INITIAL_SIZE = 4 * 1024;
+
+    private final RequestDispatcher dispatcher;
+    private final int port;
+    private final int keepAliveTimeoutMs;
+    private final int maxRequestsPerConnection;
+    private final int maxHeaderSize;
+    private final int maxBodySize;
+    private final int retryAfterSeconds;
+
+    private final EventLoop[] eventLoops;
+    private final ExecutorService workers;
+    private final Semaphore workerPermits; // só no modo VIRTUAL
+    private final ByteBufferPool bufferPool;
+    private final ObjectPool<ResponseBuffer> responseBuffers;
+
+    private volatile boolean running = true;
+    private ServerSocketChannel serverChannel;
+
+    // conexões aceites ainda não registadas num Selector, conexões registadas e pedidos recusados por falta de workers
+    private final LongAdder acceptQueueDepth = new LongAdder();
+    private final LongAdder openConnections = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    /**
+     * @param metrics onde expor filas, conexões e o pool de buffers de resposta (pode ser nulo)
+     */
+    public NioServerRequestHandler(RequestDispatcher dispatcher, MetricsRegistry metrics, int port, MiddlewareConfig config) {
+        this.dispatcher = dispatcher;
+        this.port = port;
+        this.keepAliveTimeoutMs = config.getKeepAliveTimeoutMs();
+        this.maxRequestsPerConnection = config.getMaxRequestsPerConnection();
+        this.maxHeaderSize = config.getMaxHeaderSize();
+        this.maxBodySize = config.getMaxBodySize();
+        this.retryAfterSeconds = config.getRetryAfterSeconds();
+        this.bufferPool = new ByteBufferPool(config.getReadBufferSize(), config.getIoThreads() * 64);
+        // no NIO a resposta fica toda em memória até o event loop a conseguir escrever
+        this.responseBuffers = new ObjectPool<>(0, config.getIoThreads() * 64,
+                () -> new ResponseBuffer(RESPONSE_BUFFER_INITIAL_SIZE, 4 * config.getChunkedResponseThreshold()));
+
+        if (config.getExecutionMode() == ExecutionMode.VIRTUAL) {
+            this.workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("nio-virtual-", 0).factory());
+            this.workerPermits = new Semaphore(config.getMaxConcurrentTasks());
+        } else {
+            AtomicInteger workerIds = new AtomicInteger();
+            this.workers = new ThreadPoolExecutor(
+                    config.getWorkerThreads(), config.getWorkerThreads(),
+                    60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(config.getWorkerQueueCapacity()),
+                    task -> new Thread(task, "nio-worker-" + workerIds.incrementAndGet()),
+                    new ThreadPoolExecutor.AbortPolicy());
+            this.workerPermits = null;
+        }
+
+        this.eventLoops = new EventLoop[config.getIoThreads()];
+
+        if (metrics != null) {
+            metrics.registerPool("nio-response-buffers", responseBuffers);
+            metrics.registerGauge("middleware_accept_queue_depth", "Conexões aceites à espera de um event loop.", acceptQueueDepth::sum);
+            metrics.registerGauge("middleware_open_connections", "Conexões registadas nos event loops.", openConnections::sum);
+            metrics.registerGauge("middleware_worker_queue_depth", "Invocações à espera de um worker.", this::workerQueueDepth);
+            metrics.registerCounter("middleware_worker_rejected_total", "Pedidos recusados com 503 por falta de workers.", rejectedRequests::sum);
+        }
+    }
+
+    private long workerQueueDepth() {
+        // com virtual threads não há fila: cada invocação tem logo a sua thread
+        return workers instanceof ThreadPoolExecutor executor ? executor.getQueue().size() : 0;
+    }
+
+    @Override
+    public void start() {
+        new Thread(this, "nio-acceptor").start();
+    }
+
+    @Override
+    public void stop() {
+        this.running = false;
+        try {
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            Log.error("NioServerRequestHandler", "Erro ao fechar o server channel: " + e.getMessage(), e);
+        } finally {
+            for (EventLoop loop : eventLoops) {
+                if (loop != null) loop.selector.wakeup();
+            }
+            workers.shutdown();
+            Log.info("NioServerRequestHandler", "Middleware server (NIO) parado.");
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int i = 0; i < eventLoops.length; i++) {
+                eventLoops[i] = new EventLoop(Selector.open());
+                new Thread(eventLoops[i], "nio-event-loop-" + i).start();
+            }
+
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            Log.info("NioServerRequestHandler", "Middleware server (NIO) iniciado na porta %d com %d event loops (workers: %s)",
+                    port, eventLoops.length, workerPermits != null ? "virtual threads" : "pool fixo");
+
+            // o accept é bloqueante nesta thread; cada conexão aceite é entregue a um event loop em round-robin
+            int next = 0;
+            while (running) {
+                SocketChannel channel = serverChannel.accept();
+                eventLoops[next].register(channel);
+                next = (next + 1) % eventLoops.length;
+            }
+        } catch (IOException e) {
+            if (running) {
+                Log.error("NioServerRequestHandler", "Erro Crítico no NioServerRequestHandler: " + e.getMessage(), e);
+            }
+        } finally {
+            if (!workers.isShutdown()) {
+                workers.shutdownNow();
+            }
+        }
+    }
+
+    // Estado de uma conexão; só é tocado pela thread do event loop dono dela.
+    private final class Connection {
+        private final SocketChannel channel;
+        private final HttpRequestParser parser = new HttpRequestParser(maxHeaderSize, maxBodySize);
+        private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+        private final InstanceScope scope = new InstanceScope(); // instâncias SCOPED desta conexão
+        private ResponseBuffer pendingBody; // devolvido ao pool quando a resposta acabar de ser escrita
+        private QueuedEventSink stream;     // stream de eventos que ocupa a conexão até ela fechar, ou null
+        private SelectionKey key;
+
+        private int served;
+        private boolean inFlight;        // há um pedido a ser processado por um worker
+        private boolean closeAfterWrite; // fechar assim que a resposta pendente for escrita
+        private long lastActivity = System.currentTimeMillis();
+        private long requestStartedAt;   // chegada do primeiro byte do pedido ainda incompleto
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        private EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        private void register(SocketChannel channel) {
+            acceptQueueDepth.increment();
+            execute(() -> {
+                acceptQueueDepth.decrement();
+                try {
+                    channel.configureBlocking(false);
+                    Connection connection = new Connection(channel);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    openConnections.increment();
+                } catch (IOException e) {
+                    Log.error("NioServerRequestHandler", "Erro ao registar conexão: " + e.getMessage(), e);
+                    closeQuietly(channel);
+                }
+            });
+        }
+
+        // agenda uma tarefa para correr na thread deste event loop
+        private void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long lastIdleCheck = System.currentTimeMillis();
+            try {
+                while (running) {
+                    selector.select(SELECT_TIMEOUT_MS);
+
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) onReadable(connection);
+                            if (key.isValid() && key.isWritable()) onWritable(connection);
+                        } catch (IOException e) {
+                            Log.error("NioServerRequestHandler", "Erro ao lidar com a conexão: " + e.getMessage(), e);
+                            close(connection);
+                        }
+                    }
+
+                    long now = System.currentTimeMillis();
+                    if (now - lastIdleCheck >= SELECT_TIMEOUT_MS) {
+                        closeIdleConnections(now);
+                        lastIdleCheck = now;
+                    }
+                }
+            } catch (IOException e) {
+                Log.error("NioServerRequestHandler", "Erro no event loop: " + e.getMessage(), e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key.channel());
+                }
+                closeQuietly(selector);
+            }
+        }
+
+        private void onReadable(Connection connection) throws IOException {
+            ByteBuffer buffer = bufferPool.acquire();
+            try {
+                int read = connection.channel.read(buffer);
+                if (read == -1) {
+                    close(connection);
+                    return;
+                }
+                if (connection.stream != null) {
+                    return; // o cliente de um stream não envia mais pedidos; só interessa saber quando fecha
+                }
+                connection.lastActivity = System.currentTimeMillis();
+                if (!connection.parser.hasPartialRequest()) {
+                    connection.requestStartedAt = connection.lastActivity;
+                }
+                buffer.flip();
+                connection.parser.feed(buffer);
+            } finally {
+                bufferPool.release(buffer);
+            }
+            if (connection.stream == null) {
+                processNext(connection);
+            }
+        }
+
+        // Processa no máximo um pedido de cada vez por conexão, o que mantém a ordem das respostas em pipeline.
+        private void processNext(Connection connection) {
+            if (connection.inFlight || connection.closeAfterWrite || !connection.channel.isOpen()) return;
+
+            HttpRequest request;
+            try {
+                request = connection.parser.next();
+            } catch (BadRequestException e) {
+                respond(connection, RequestDispatcher.badRequest(e), false, null);
+                return;
+            }
+            if (request == null) return;
+
+            connection.requestStartedAt = System.currentTimeMillis();
+            connection.inFlight = true;
+            connection.served++;
+            boolean keepAlive = request.isKeepAlive() && connection.served < maxRequestsPerConnection && running;
+            Log.info("NioServerRequestHandler", "Received %s request for path: %s", request.getHttpMethod(), request.getPath());
+
+            // enquanto o worker trabalha, deixamos de ler desta conexão (backpressure)
+            connection.key.interestOps(0);
+            try {
+                submit(() -> {
+                    ResponseBuffer body = null;
+                    try {
+                        body = responseBuffers.borrowObject();
+                        body.clear();
+                        ResponseBuffer borrowed = body;
+                        // métodos assíncronos (ex.: long-polling) libertam o worker e respondem quando o resultado chegar
+                        HttpResponse response = dispatcher.dispatch(request, body, connection.scope,
+                                completed -> execute(() -> respond(connection, completed, keepAlive, borrowed)));
+                        if (response != null) {
+                            execute(() -> respond(connection, response, keepAlive, borrowed));
+                        }
+                    } catch (RuntimeException | Error e) {
+                        // sem resposta a conexão ficava em inFlight e sem leitura para sempre; responde 500 e fecha
+                        Log.error("NioServerRequestHandler", "Erro inesperado ao processar o pedido: " + e.getMessage(), e);
+                        responseBuffers.returnObject(body);
+                        execute(() -> respond(connection, RequestDispatcher.internalError(), false, null));
+                        if (e instanceof Error error) throw error;
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejectedRequests.increment();
+                Log.warn("NioServerRequestHandler", "Pool de workers cheio. Respondendo 503.");
+                respond(connection, RequestDispatcher.serviceUnavailable(retryAfterSeconds), false, null);
+            }
+        }
+
+        private void respond(Connection connection, HttpResponse response, boolean keepAlive, ResponseBuffer body) {
+            if (!connection.channel.isOpen()) {
+                responseBuffers.returnObject(body);
+                return;
+            }
+
+            // headers e corpo seguem como dois buffers, sem os juntar numa cópia
+            byte[] head = response.encodeHead(keepAlive, keepAliveTimeoutMs, maxRequestsPerConnection - connection.served);
+            connection.pendingWrites.add(ByteBuffer.wrap(head));
+            connection.pendingWrites.add(ByteBuffer.wrap(response.getBody(), 0, response.getBodyLength()));
+            connection.pendingBody = body;
+            connection.closeAfterWrite = !keepAlive;
+
+            if (response.getEventStream() != null) {
+                // a partir daqui a conexão só leva eventos, escritos pelo event loop à medida que chegam
+                connection.stream = response.getEventStream();
+                connection.closeAfterWrite = false;
+                connection.stream.setWakeup(() -> execute(() -> drainStream(connection)));
+            }
+            try {
+                onWritable(connection);
+            } catch (IOException e) {
+                Log.error("NioServerRequestHandler", "Erro ao escrever resposta: " + e.getMessage(), e);
+                close(connection);
+            }
+        }
+
+        private void onWritable(Connection connection) throws IOException {
+            while (!connection.pendingWrites.isEmpty()) {
+                ByteBuffer head = connection.pendingWrites.peek();
+                connection.channel.write(head);
+                if (head.hasRemaining()) {
+                    // socket cheio: continua quando voltar a ser possível escrever
+                    connection.key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.pendingWrites.poll();
+            }
+            connection.lastActivity = System.currentTimeMillis();
+            releaseBody(connection);
+
+            if (connection.stream != null) {
+                if (!connection.stream.isOpen()) {
+                    close(connection); // fim do stream, depois de escritos os eventos que restavam
+                    return;
+                }
+                // continua à escuta de leitura para perceber quando o cliente fecha
+                connection.key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+
+            if (connection.closeAfterWrite) {
+                close(connection);
+                return;
+            }
+            connection.inFlight = false;
+            connection.key.interestOps(SelectionKey.OP_READ);
+            // pedidos em pipeline que já estavam no buffer
+            processNext(connection);
+        }
+
+        // Passa os eventos do sink para a fila de escrita e escreve o que o socket aceitar.
+        private void drainStream(Connection connection) {
+            if (!connection.channel.isOpen()) return;
+
+            byte[] frame;
+            while ((frame = connection.stream.poll()) != null) {
+                connection.pendingWrites.add(ByteBuffer.wrap(frame));
+            }
+            try {
+                // com o socket cheio os frames esperam pelo OP_WRITE; o sink limita quantos se acumulam
+                if (connection.key.interestOps() != SelectionKey.OP_WRITE) {
+                    onWritable(connection);
+                }
+            } catch (IOException e) {
+                Log.info("NioServerRequestHandler", "Cliente do stream de eventos desligou-se: %s", e.getMessage());
+                close(connection);
+            }
+        }
+
+        // Fecha conexões ociosas e também as que enviam um pedido devagar demais (slow-loris).
+        // Streams de eventos sem atividade recebem um heartbeat em vez de serem fechados.
+        private void closeIdleConnections(long now) {
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (connection != null && connection.stream != null) {
+                    if (now - connection.lastActivity >= connection.stream.getHeartbeatMs() && connection.pendingWrites.isEmpty()) {
+                        connection.pendingWrites.add(ByteBuffer.wrap(QueuedEventSink.HEARTBEAT));
+                        drainStream(connection);
+                    }
+                    continue;
+                }
+                if (connection == null || connection.inFlight) continue;
+
+                // com um pedido a meio conta desde o primeiro byte dele, senão desde a última atividade
+                long since = connection.parser.hasPartialRequest() ? connection.requestStartedAt : connection.lastActivity;
+                if (now - since > keepAliveTimeoutMs) {
+                    Log.info("NioServerRequestHandler", "Conexão ociosa por %d ms. Fechando.", keepAliveTimeoutMs);
+                    close(connection);
+                }
+            }
+        }
+
+        private void close(Connection connection) {
+            if (connection.channel.isOpen()) {
+                openConnections.decrement();
+            }
+            connection.key.cancel();
+            closeQuietly(connection.channel);
+            releaseBody(connection);
+            if (connection.stream != null) {
+                connection.stream.close(); // o método do stream deixa de publicar para este cliente
+            }
+        }
+
+        private void releaseBody(Connection connection) {
+            if (connection.pendingBody != null) {
+                responseBuffers.returnObject(connection.pendingBody);
+                connection.pendingBody = null;
+            }
+        }
+    }
+
+    // entrega a invocação aos workers; sem capacidade livre lança RejectedExecutionException
+    private void submit(Runnable task) {
+        if (workerPermits == null) {
+            workers.execute(task);
+            return;
+        }
+        if (!workerPermits.tryAcquire()) {
+            throw new RejectedExecutionException("Limite de virtual threads atingido.");
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    workerPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            workerPermits.release();
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (ClosedChannelException ignored) {
+            // já estava fechado
+        } catch (IOException e) {
+            Log.error("NioServerRequestHandler", "Erro ao fechar recurso: " + e.getMessage(), e);
+        }
+    }
+}
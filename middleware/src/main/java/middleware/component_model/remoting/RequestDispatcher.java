@@ -0,0 +1,328 @@
+package middleware.component_model.remoting;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import middleware.component_model.identification.AbsoluteObjectReference;
+import middleware.exceptions.AuthException;
+import middleware.exceptions.BadRequestException;
+import middleware.exceptions.NotImplementedException;
+import middleware.exceptions.RemoteInvocationException;
+import middleware.exceptions.RouteNotFoundException;
+import middleware.exceptions.ServiceUnavailableException;
+import middleware.lifecycle.InstanceScope;
+import middleware.metrics.MetricsRegistry;
+import middleware.metrics.PrometheusWriter;
+import middleware.metrics.RouteMetrics;
+import middleware.streaming.EventStreamBinding;
+import middleware.streaming.QueuedEventSink;
+import middleware.util.Log;
+
+// Converte um HttpRequest numa invocação do Invoker e traduz o resultado (ou a exceção) em HttpResponse.
+// É partilhado por todos os transportes, para que os códigos de erro sejam os mesmos em qualquer um deles.
+public class RequestDispatcher {
+
+    private final Invoker invoker;
+    private final MetricsRegistry metrics; // nulo com as métricas desligadas
+    private final String metricsPath;
+
+    // multi-invoke: caminho do envelope (null desliga), limite de chamadas e onde correm em paralelo
+    private final String multiInvokePath;
+    private final int maxMultiInvokeCalls;
+    private final Executor multiInvokeExecutor;
+
+    public RequestDispatcher(Invoker invoker) {
+        this(invoker, null, null);
+    }
+
+    /**
+     * @param metrics     onde registar latência e respostas de cada rota (pode ser nulo)
+     * @param metricsPath caminho onde as métricas são servidas em formato Prometheus (pode ser nulo)
+     */
+    public RequestDispatcher(Invoker invoker, MetricsRegistry metrics, String metricsPath) {
+        this(invoker, metrics, metricsPath, null, 0, null);
+    }
+
+    /**
+     * @param multiInvokePath     caminho onde um POST leva várias chamadas num envelope (null desliga)
+     * @param maxMultiInvokeCalls máximo de chamadas por envelope
+     * @param multiInvokeExecutor onde correm as chamadas de um envelope em modo paralelo
+     */
+    public RequestDispatcher(Invoker invoker, MetricsRegistry metrics, String metricsPath,
+                             String multiInvokePath, int maxMultiInvokeCalls, Executor multiInvokeExecutor) {
+        this.invoker = invoker;
+        this.metrics = metrics;
+        this.metricsPath = metricsPath;
+        this.multiInvokePath = multiInvokePath;
+        this.maxMultiInvokeCalls = maxMultiInvokeCalls;
+        this.multiInvokeExecutor = multiInvokeExecutor;
+    }
+
+    /**
+     * Invoca o método do pedido, serializando o resultado em {@code body}, e espera pela resposta
+     * mesmo que o método remoto seja assíncrono.
+     * Em caso de erro o conteúdo do buffer é descartado e a resposta leva a mensagem de erro;
+     * se o corpo já tiver começado a sair em chunks isso não é possível, e o transporte deve
+     * fechar a conexão (ver {@link ResponseBuffer#isCommitted()}).
+     */
+    public HttpResponse dispatch(HttpRequest request, ResponseBuffer body) {
+        return dispatch(request, body, (InstanceScope) null);
+    }
+
+    /**
+     * Como {@link #dispatch(HttpRequest, ResponseBuffer)}, com o âmbito da conexão: os componentes
+     * SCOPED reutilizam a mesma instância em todos os pedidos de {@code scope}.
+     */
+    public HttpResponse dispatch(HttpRequest request, ResponseBuffer body, InstanceScope scope) {
+        CompletableFuture<HttpResponse> later = new CompletableFuture<>();
+        HttpResponse response = dispatch(request, body, scope, later::complete);
+        return response != null ? response : later.join();
+    }
+
+    /**
+     * Como {@link #dispatch(HttpRequest, ResponseBuffer)}, mas sem esperar por métodos assíncronos:
+     * nesse caso devolve null e a resposta é entregue mais tarde a {@code onCompletion}, na thread
+     * que completar o resultado.
+     *
+     * Um pedido com {@code Accept: text/event-stream} para uma rota @EventStream recebe um sink novo;
+     * a resposta leva esse sink ({@link HttpResponse#getEventStream()}) e o transporte envia os
+     * eventos até o sink ou a conexão fecharem.
+     */
+    public HttpResponse dispatch(HttpRequest request, ResponseBuffer body, Consumer<HttpResponse> onCompletion) {
+        return dispatch(request, body, null, onCompletion);
+    }
+
+    public HttpResponse dispatch(HttpRequest request, ResponseBuffer body, InstanceScope scope, Consumer<HttpResponse> onCompletion) {
+        if (metrics != null && metricsPath != null && "GET".equals(request.getHttpMethod()) && metricsPath.equals(request.getPath())) {
+            return new HttpResponse(200, "OK", metrics.scrape()).setContentType(PrometheusWriter.CONTENT_TYPE);
+        }
+        if (multiInvokePath != null && "POST".equals(request.getHttpMethod()) && multiInvokePath.equals(request.getPath())) {
+            return dispatchMulti(request, body, onCompletion);
+        }
+
+        // a rota é resolvida uma vez: serve as métricas (pelo caminho do template), o stream e a invocação
+        AbsoluteObjectReference target = invoker.find(request.getHttpMethod(), request.getPath());
+        RouteMetrics route = metrics != null ? metrics.route(routeKey(target)) : null;
+        if (route != null) route.requestStarted();
+        long start = System.nanoTime();
+
+        QueuedEventSink sink = null;
+        if (request.acceptsEventStream() && target != null) {
+            EventStreamBinding eventStream = target.getEventStream();
+            if (eventStream != null) {
+                sink = eventStream.newSink(invoker.getMarshaller());
+            }
+        }
+
+        CompletionStage<Void> pending;
+        try {
+            pending = invoker.invoke(target, request.getHttpMethod(), request.getPath(),
+                    request.getBodyBuffer(), request.getBodyOffset(), request.getBodyLength(), body, sink, scope);
+        } catch (Exception e) {
+            return record(route, start, errorResponse(e, body, sink));
+        }
+
+        if (pending == null) {
+            return record(route, start, success(body, sink));
+        }
+
+        QueuedEventSink streamSink = sink;
+        pending.whenComplete((ignored, failure) -> {
+            HttpResponse response = failure == null
+                    ? success(body, streamSink)
+                    : errorResponse(Invoker.unwrap(failure), body, streamSink);
+            onCompletion.accept(record(route, start, response));
+        });
+        return null;
+    }
+
+    /**
+     * Envelope multi-invoke ({@link MultiInvoke}): cada chamada passa por {@link #dispatch} como um
+     * pedido normal (rota, admissão, interceptadores, métricas e códigos de erro) e as respostas são
+     * juntas numa só. Em modo paralelo as chamadas correm no executor de multi-invoke; em modo
+     * sequencial cada uma só começa quando a anterior termina, e todas partilham um âmbito
+     * (as instâncias SCOPED do envelope). Em paralelo não há âmbito: as chamadas correm ao mesmo tempo.
+     */
+    private HttpResponse dispatchMulti(HttpRequest request, ResponseBuffer body, Consumer<HttpResponse> onCompletion) {
+        MultiInvoke multi;
+        try {
+            multi = MultiInvoke.parse(request.getBodyBuffer(), request.getBodyOffset(), request.getBodyLength(), maxMultiInvokeCalls);
+        } catch (BadRequestException e) {
+            return badRequest(e);
+        }
+
+        List<CompletableFuture<HttpResponse>> results = new ArrayList<>(multi.getCalls().size());
+        CompletableFuture<HttpResponse> previous = CompletableFuture.completedFuture(null);
+        InstanceScope scope = multi.isSequential() ? new InstanceScope() : null;
+        for (MultiInvoke.Call call : multi.getCalls()) {
+            CompletableFuture<HttpResponse> result;
+            if (!multi.isSequential()) {
+                result = dispatchCallAsync(call);
+            } else if (previous.isDone()) {
+                result = dispatchCall(call, scope);
+            } else {
+                // não continua na thread que completou a anterior (ex.: a thread de um componente)
+                result = previous.thenComposeAsync(ignored -> dispatchCall(call, scope), multiInvokeExecutor);
+            }
+            results.add(result);
+            previous = result;
+        }
+
+        CompletableFuture<HttpResponse> combined = CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                .handle((ignored, failure) -> failure == null
+                        ? combine(results, body)
+                        : errorResponse(Invoker.unwrap(failure), body, null)); // ex.: executor recusou a tarefa
+        if (combined.isDone()) {
+            return combined.join();
+        }
+        combined.thenAccept(onCompletion);
+        return null;
+    }
+
+    private CompletableFuture<HttpResponse> dispatchCallAsync(MultiInvoke.Call call) {
+        try {
+            return CompletableFuture.supplyAsync(() -> dispatchCall(call, null), multiInvokeExecutor).thenCompose(result -> result);
+        } catch (RejectedExecutionException e) {
+            return dispatchCall(call, null); // executor cheio: a chamada corre nesta thread
+        }
+    }
+
+    private CompletableFuture<HttpResponse> dispatchCall(MultiInvoke.Call call, InstanceScope scope) {
+        // as respostas destas rotas não são JSON nem podem ir dentro de um envelope
+        if (call.path().equals(metricsPath) || call.path().equals(multiInvokePath)) {
+            return CompletableFuture.completedFuture(badRequest(new BadRequestException("Rota não permitida num envelope multi-invoke: " + call.path())));
+        }
+
+        HttpRequest request = new HttpRequest(call.method(), call.path(), "HTTP/1.1", call.body(), 0, call.body().length, false);
+        CompletableFuture<HttpResponse> later = new CompletableFuture<>();
+        HttpResponse response = dispatch(request, new ResponseBuffer(256, Integer.MAX_VALUE), scope, later::complete);
+        return response != null ? CompletableFuture.completedFuture(response) : later;
+    }
+
+    private static HttpResponse combine(List<CompletableFuture<HttpResponse>> results, ResponseBuffer body) {
+        List<HttpResponse> responses = new ArrayList<>(results.size());
+        for (CompletableFuture<HttpResponse> result : results) {
+            responses.add(result.join());
+        }
+        try {
+            MultiInvoke.writeResults(responses, body);
+        } catch (IOException e) {
+            discard(body);
+            return new HttpResponse(500, "Erro Interno do Servidor", "{\"error\": \"Falha ao escrever a resposta multi-invoke.\"}");
+        }
+        return new HttpResponse(200, "OK", body.getBuffer(), body.size());
+    }
+
+    private static HttpResponse success(ResponseBuffer body, QueuedEventSink sink) {
+        return sink != null
+                ? HttpResponse.eventStream(sink)
+                : new HttpResponse(200, "OK", body.getBuffer(), body.size());
+    }
+
+    private static String routeKey(AbsoluteObjectReference target) {
+        return target != null && target.getRoute() != null ? target.getRoute().getKey() : null;
+    }
+
+    private static HttpResponse record(RouteMetrics route, long start, HttpResponse response) {
+        if (route != null) {
+            route.requestCompleted(response.getStatusCode(), System.nanoTime() - start);
+        }
+        return response;
+    }
+
+    // traduz a falha de uma invocação no código HTTP correspondente
+    private HttpResponse errorResponse(Throwable failure, ResponseBuffer body, QueuedEventSink sink) {
+        if (sink != null) {
+            sink.close(); // o stream não chegou a começar
+        }
+
+        String errorBody;
+        int statusCode;
+        String statusMessage;
+
+        if (failure instanceof ServiceUnavailableException e) {
+            // recusa rápida: não passa pelo log de erro para não agravar a sobrecarga
+            discard(body);
+            return serviceUnavailable(e.getRetryAfterSeconds());
+
+        } else if (failure instanceof AuthException e) {
+            statusCode = 403;
+            statusMessage = "Acesso Negado";
+            errorBody = "{\"error\": \"" + e.getMessage().replace("\"", "'") + "\"}";
+            Log.warn("RequestDispatcher", "Erro de Autorização [403]: " + e.getMessage());
+
+        } else if (failure instanceof RouteNotFoundException e) {
+            statusCode = 404;
+            statusMessage = "Não Encontrado";
+            errorBody = "{\"error\": \"" + e.getMessage().replace("\"", "'") + "\"}";
+            Log.error("RequestDispatcher", "Erro do Cliente [404]: " + e.getMessage(), e);
+
+        } else if (failure instanceof BadRequestException e) {
+            discard(body);
+            return badRequest(e);
+
+        } else if (failure instanceof JsonProcessingException e) {
+            statusCode = 400;
+            statusMessage = "Requisição Inválida";
+            errorBody = "{\"error\": \"Formato JSON ou campos inválidos.\", \"details\": \"" + e.getMessage().replace("\"", "'") + "\"}";
+            Log.error("RequestDispatcher", "Erro do Cliente [400]: Requisição JSON inválida. " + e.getMessage(), e);
+
+        } else if (failure instanceof RemoteInvocationException e) {
+            statusCode = 500;
+            statusMessage = "Erro Interno do Servidor";
+            errorBody = "{\"error\": \"Erro ao executar a lógica de negócio.\", \"details\": \"" + String.valueOf(e.getCause().getMessage()).replace("\"", "'") + "\"}";
+            Log.error("RequestDispatcher", "Erro do Servidor [500]: Exceção no método remoto. Detalhes:", e.getCause());
+
+        } else {
+            statusCode = 500;
+            statusMessage = "Erro Interno do Servidor";
+            errorBody = "{\"error\": \"Ocorreu um erro inesperado.\", \"details\": \"" + String.valueOf(failure.getMessage()).replace("\"", "'") + "\"}";
+            Log.error("RequestDispatcher", "Erro no Middleware [500]: " + failure.getMessage(), failure);
+        }
+
+        discard(body);
+        return new HttpResponse(statusCode, statusMessage, errorBody);
+    }
+
+    // descarta um resultado parcial, se ainda não tiver ido para o socket
+    private static void discard(ResponseBuffer body) {
+        if (!body.isCommitted()) {
+            body.reset();
+        }
+    }
+
+    /**
+     * Resposta para um pedido que nem chegou a ser interpretado (linha de pedido ou headers inválidos).
+     */
+    public static HttpResponse badRequest(BadRequestException e) {
+        if (e instanceof NotImplementedException) {
+            Log.warn("RequestDispatcher", "Erro do Cliente [501]: " + e.getMessage());
+            return new HttpResponse(501, "Não Implementado", "{\"error\": \"" + e.getMessage().replace("\"", "'") + "\"}");
+        }
+        Log.warn("RequestDispatcher", "Erro do Cliente [400]: " + e.getMessage());
+        return new HttpResponse(400, "Requisição Inválida", "{\"error\": \"" + e.getMessage().replace("\"", "'") + "\"}");
+    }
+
+    /**
+     * Resposta para uma falha do próprio transporte ou do middleware, fora de qualquer invocação.
+     */
+    public static HttpResponse internalError() {
+        return new HttpResponse(500, "Erro Interno do Servidor", "{\"error\": \"Erro interno do servidor.\"}");
+    }
+
+    /**
+     * Resposta para quando o servidor não tem capacidade para aceitar mais trabalho.
+     */
+    public static HttpResponse serviceUnavailable(int retryAfterSeconds) {
+        return new HttpResponse(503, "Serviço Indisponível", "{\"error\": \"Servidor sobrecarregado. Tente novamente.\"}")
+                .setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+    }
+}
@@ -0,0 +1,140 @@
+package middleware.component_model.remoting;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Buffer reutilizável onde o Marshaller escreve o corpo da resposta.
+ *
+ * Por omissão tudo fica em memória e a resposta sai com Content-Length. Com
+ * {@link #enableChunking} ligado, assim que o corpo passa do limite os headers são enviados
+ * com "Transfer-Encoding: chunked" e o resto segue para o socket em blocos, sem nunca
+ * existir uma cópia inteira de um resultado grande.
+ */
+public class ResponseBuffer extends OutputStream {
+
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] LAST_CHUNK = { '0', '\r', '\n', '\r', '\n' };
+
+    /**
+     * Escreve status e headers de uma resposta chunked, no momento em que ela é confirmada.
+     */
+    public interface ChunkedHeadWriter {
+        void writeHead(OutputStream sink) throws IOException;
+    }
+
+    // acima disto o buffer é descartado em vez de ficar retido para a próxima resposta
+    private final int maxRetainedSize;
+    private final int initialSize;
+
+    private byte[] buf;
+    private int count;
+
+    private OutputStream chunkSink;
+    private int chunkThreshold;
+    private ChunkedHeadWriter headWriter;
+    private boolean committed;
+
+    public ResponseBuffer(int initialSize, int maxRetainedSize) {
+        this.initialSize = initialSize;
+        this.maxRetainedSize = maxRetainedSize;
+        this.buf = new byte[initialSize];
+    }
+
+    /**
+     * Passa a enviar o corpo em chunks para {@code sink} quando ele ultrapassar {@code threshold} bytes.
+     * Vale só para a resposta corrente; {@link #reset()} desliga.
+     */
+    public void enableChunking(OutputStream sink, int threshold, ChunkedHeadWriter headWriter) {
+        this.chunkSink = sink;
+        this.chunkThreshold = threshold;
+        this.headWriter = headWriter;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+        maybeFlushChunk();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureCapacity(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+        maybeFlushChunk();
+    }
+
+    /**
+     * Descarta o conteúdo para reutilizar o buffer (ou para trocar o corpo por uma mensagem de erro).
+     *
+     * @throws IllegalStateException se parte do corpo já tiver sido enviada em chunks
+     */
+    public void reset() {
+        if (committed) {
+            throw new IllegalStateException("Resposta já enviada parcialmente (chunked).");
+        }
+        clear();
+    }
+
+    // prepara o buffer para uma nova resposta, incluindo depois de uma resposta chunked
+    public void clear() {
+        count = 0;
+        committed = false;
+        chunkSink = null;
+        headWriter = null;
+        if (buf.length > maxRetainedSize) {
+            buf = new byte[initialSize];
+        }
+    }
+
+    // true se os headers e parte do corpo já foram para o socket
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Termina uma resposta chunked: envia o que falta e o chunk final.
+     */
+    public void finish() throws IOException {
+        if (!committed) return;
+        writeChunk();
+        chunkSink.write(LAST_CHUNK);
+    }
+
+    public byte[] getBuffer() { return buf; }
+    public int size() { return count; }
+
+    // o socket não pertence a este stream; o Jackson não o deve fechar
+    @Override
+    public void close() {
+    }
+
+    private void maybeFlushChunk() throws IOException {
+        if (chunkSink == null || count < chunkThreshold) return;
+
+        if (!committed) {
+            headWriter.writeHead(chunkSink);
+            committed = true;
+        }
+        writeChunk();
+    }
+
+    private void writeChunk() throws IOException {
+        if (count == 0) return;
+        chunkSink.write(Integer.toHexString(count).getBytes(StandardCharsets.US_ASCII));
+        chunkSink.write(CRLF);
+        chunkSink.write(buf, 0, count);
+        chunkSink.write(CRLF);
+        count = 0;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+        }
+    }
+}
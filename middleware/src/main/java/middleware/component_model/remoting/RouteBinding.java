@@ -0,0 +1,248 @@
+package middleware.component_model.remoting;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import middleware.component_model.annotations.PathVariable;
+import middleware.component_model.annotations.QueryParam;
+import middleware.component_model.annotations.RequestBody;
+import middleware.exceptions.BadRequestException;
+
+/**
+ * Rota de um método, resolvida no registo: o método HTTP, o caminho (com as variáveis {nome}) e
+ * onde cada @PathVariable e @QueryParam entra nos argumentos. O valor de uma variável é o segmento
+ * do caminho na mesma posição; a query string é percorrida uma vez por pedido.
+ */
+public class RouteBinding {
+
+    private final String httpMethod;
+    private final String path;
+    private final String key; // ex.: "GET:/messagestore/groups/{groupId}/messages"
+
+    // @PathVariable: segmento do caminho -> argumento
+    private final int[] pathSegments;
+    private final int[] pathArgs;
+    private final String[] pathNames;
+    private final Converter[] pathConverters;
+
+    // @QueryParam: nome -> argumento
+    private final String[] queryNames;
+    private final int[] queryArgs;
+    private final Converter[] queryConverters;
+    private final boolean[] queryRequired;
+
+    private RouteBinding(String httpMethod, String path, int[] pathSegments, int[] pathArgs, String[] pathNames, Converter[] pathConverters,
+                         String[] queryNames, int[] queryArgs, Converter[] queryConverters, boolean[] queryRequired) {
+        this.httpMethod = httpMethod;
+        this.path = path;
+        this.key = httpMethod + ":" + path;
+        this.pathSegments = pathSegments;
+        this.pathArgs = pathArgs;
+        this.pathNames = pathNames;
+        this.pathConverters = pathConverters;
+        this.queryNames = queryNames;
+        this.queryArgs = queryArgs;
+        this.queryConverters = queryConverters;
+        this.queryRequired = queryRequired;
+    }
+
+    /**
+     * @throws IllegalArgumentException se o caminho está mal formado, uma @PathVariable não existe no
+     *         caminho, ou um parâmetro tem um tipo que não pode vir do caminho ou da query string
+     */
+    public static RouteBinding of(String httpMethod, String path, Method method) {
+        List<String> variables = variables(path, method);
+
+        List<int[]> pathBindings = new ArrayList<>();   // {segmento, argumento}
+        List<Converter> pathConverters = new ArrayList<>();
+        List<QueryParam> queryParams = new ArrayList<>();
+        List<Integer> queryArgs = new ArrayList<>();
+        List<Converter> queryConverters = new ArrayList<>();
+
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            PathVariable pathVariable = parameters[i].getAnnotation(PathVariable.class);
+            QueryParam queryParam = parameters[i].getAnnotation(QueryParam.class);
+            if (pathVariable == null && queryParam == null) continue;
+            if ((pathVariable != null && queryParam != null) || parameters[i].isAnnotationPresent(RequestBody.class)) {
+                throw new IllegalArgumentException("O parâmetro " + i + " de " + method.getName() + " tem mais do que uma origem.");
+            }
+
+            Class<?> type = parameters[i].getType();
+            if (pathVariable != null) {
+                int segment = variables.indexOf(pathVariable.value());
+                if (segment < 0) {
+                    throw new IllegalArgumentException("A @PathVariable '" + pathVariable.value() + "' de " + method.getName() + " não existe em " + path + ".");
+                }
+                pathBindings.add(new int[] { segment, i });
+                pathConverters.add(Converter.of(type, method));
+            } else {
+                if (!queryParam.required() && type.isPrimitive()) {
+                    throw new IllegalArgumentException("O @QueryParam opcional '" + queryParam.value() + "' de " + method.getName() + " deve usar o tipo wrapper.");
+                }
+                queryParams.add(queryParam);
+                queryArgs.add(i);
+                queryConverters.add(Converter.of(type, method));
+            }
+        }
+
+        int[] segments = new int[pathBindings.size()];
+        int[] args = new int[pathBindings.size()];
+        String[] pathNames = new String[pathBindings.size()];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = pathBindings.get(i)[0];
+            args[i] = pathBindings.get(i)[1];
+            pathNames[i] = variables.get(segments[i]);
+        }
+        String[] names = new String[queryParams.size()];
+        boolean[] required = new boolean[queryParams.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = queryParams.get(i).value();
+            required[i] = queryParams.get(i).required();
+        }
+        return new RouteBinding(httpMethod, path, segments, args, pathNames, pathConverters.toArray(Converter[]::new),
+                names, queryArgs.stream().mapToInt(Integer::intValue).toArray(), queryConverters.toArray(Converter[]::new), required);
+    }
+
+    // nome da variável de cada segmento do caminho (null nos segmentos fixos); "/a/{b}" -> [null, null, "b"]
+    private static List<String> variables(String path, Method method) {
+        if (!path.startsWith("/") || path.indexOf('?') >= 0) {
+            throw new IllegalArgumentException("Caminho inválido em " + method.getName() + ": " + path);
+        }
+        List<String> variables = new ArrayList<>();
+        for (String segment : path.split("/", -1)) {
+            if (segment.startsWith("{") && segment.endsWith("}") && segment.length() > 2) {
+                String name = segment.substring(1, segment.length() - 1);
+                if (variables.contains(name) || name.indexOf('{') >= 0 || name.indexOf('}') >= 0) {
+                    throw new IllegalArgumentException("Variável repetida ou mal formada em " + method.getName() + ": " + path);
+                }
+                variables.add(name);
+            } else if (segment.indexOf('{') >= 0 || segment.indexOf('}') >= 0) {
+                throw new IllegalArgumentException("Uma variável do caminho deve ocupar o segmento inteiro (" + method.getName() + ": " + path + ").");
+            } else {
+                variables.add(null);
+            }
+        }
+        return variables;
+    }
+
+    public String getHttpMethod() { return httpMethod; }
+    public String getPath() { return path; }
+    public String getKey() { return key; }
+
+    public boolean hasParameters() {
+        return pathArgs.length > 0 || queryArgs.length > 0;
+    }
+
+    /**
+     * Preenche em {@code args} os parâmetros @PathVariable e @QueryParam a partir do alvo do pedido
+     * (caminho e query string). O alvo tem de ter sido encontrado para esta rota pelo Lookup.
+     *
+     * @throws BadRequestException se falta um @QueryParam obrigatório ou um valor não tem o tipo do parâmetro
+     */
+    public void bind(String target, Object[] args) throws BadRequestException {
+        int end = target.indexOf('?');
+        if (end < 0) end = target.length();
+
+        if (pathArgs.length > 0) {
+            int segment = 0;
+            int start = 0;
+            for (int i = 0; i <= end; i++) {
+                if (i == end || target.charAt(i) == '/') {
+                    for (int b = 0; b < pathSegments.length; b++) {
+                        if (pathSegments[b] == segment) {
+                            args[pathArgs[b]] = convert(pathConverters[b], decode(target, start, i, false), pathNames[b]);
+                        }
+                    }
+                    segment++;
+                    start = i + 1;
+                }
+            }
+        }
+
+        if (queryArgs.length > 0) {
+            boolean[] found = new boolean[queryArgs.length];
+            int from = end + 1;
+            while (from < target.length()) {
+                int pairEnd = target.indexOf('&', from);
+                if (pairEnd < 0) pairEnd = target.length();
+                int equals = target.indexOf('=', from);
+                int nameEnd = equals >= 0 && equals < pairEnd ? equals : pairEnd;
+                for (int q = 0; q < queryNames.length; q++) {
+                    String name = queryNames[q];
+                    if (!found[q] && name.length() == nameEnd - from && target.regionMatches(from, name, 0, name.length())) {
+                        String value = nameEnd < pairEnd ? decode(target, nameEnd + 1, pairEnd, true) : "";
+                        args[queryArgs[q]] = convert(queryConverters[q], value, name);
+                        found[q] = true;
+                    }
+                }
+                from = pairEnd + 1;
+            }
+            for (int q = 0; q < queryNames.length; q++) {
+                if (!found[q] && queryRequired[q]) {
+                    throw new BadRequestException("Falta o parâmetro '" + queryNames[q] + "' na query string.");
+                }
+            }
+        }
+    }
+
+    private static Object convert(Converter converter, String value, String name) throws BadRequestException {
+        try {
+            return converter.convert(value);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Valor inválido para o parâmetro '" + name + "': " + value);
+        }
+    }
+
+    // decodifica %XX (como UTF-8) e, na query string, '+' como espaço; sem nada para decodificar é só um substring
+    private static String decode(String s, int from, int to, boolean plusAsSpace) throws BadRequestException {
+        int i = from;
+        while (i < to && s.charAt(i) != '%' && !(plusAsSpace && s.charAt(i) == '+')) i++;
+        if (i == to) return s.substring(from, to);
+
+        StringBuilder decoded = new StringBuilder(to - from).append(s, from, i);
+        byte[] bytes = null;
+        while (i < to) {
+            char c = s.charAt(i);
+            if (c == '%') {
+                // sequência de %XX seguidos: um carácter UTF-8 pode ocupar vários bytes
+                if (bytes == null) bytes = new byte[(to - i) / 3];
+                int count = 0;
+                while (i < to && s.charAt(i) == '%') {
+                    int high = i + 2 < to ? Character.digit(s.charAt(i + 1), 16) : -1;
+                    int low = i + 2 < to ? Character.digit(s.charAt(i + 2), 16) : -1;
+                    if (high < 0 || low < 0) {
+                        throw new BadRequestException("Codificação % inválida: " + s.substring(from, to));
+                    }
+                    bytes[count++] = (byte) (high << 4 | low);
+                    i += 3;
+                }
+                decoded.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+            } else {
+                decoded.append(plusAsSpace && c == '+' ? ' ' : c);
+                i++;
+            }
+        }
+        return decoded.toString();
+    }
+
+    // converte o texto do pedido para o tipo do parâmetro; IllegalArgumentException se não der
+    private interface Converter {
+        Object convert(String value);
+
+        static Converter of(Class<?> type, Method method) {
+            if (type == String.class) return value -> value;
+            if (type == int.class || type == Integer.class) return Integer::valueOf;
+            if (type == long.class || type == Long.class) return Long::valueOf;
+            if (type == boolean.class || type == Boolean.class) return value -> switch (value) {
+                case "true" -> Boolean.TRUE;
+                case "false" -> Boolean.FALSE;
+                default -> throw new IllegalArgumentException(value);
+            };
+            throw new IllegalArgumentException("Tipo " + type.getSimpleName() + " não suportado num parâmetro de caminho ou query string (" + method.getName() + ").");
+        }
+    }
+}
@@ -1,42 +1,78 @@
 package middleware.component_model.remoting;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.lang.reflect.InvocationTargetException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.net.SocketTimeoutException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-
-import com.fasterxml.jackson.core.JsonProcessingException;
-
-import middleware.exceptions.AuthException;
-import middleware.exceptions.RouteNotFoundException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import middleware.MiddlewareConfig;
+import middleware.exceptions.BadRequestException;
+import middleware.lifecycle.InstanceScope;
+import middleware.metrics.MetricsRegistry;
+import middleware.streaming.QueuedEventSink;
 import middleware.util.Log;
 
 
-public class ServerRequestHandler implements Runnable {
+public class ServerRequestHandler implements ServerTransport, Runnable {
 
-    private final Invoker invoker;
+    private static final int RESPONSE_BUFFER_INITIAL_SIZE = 4 * 1024;
+
+    private final RequestDispatcher dispatcher;
     private final int port;
     private volatile boolean running = true;
     private final ExecutorService pool;
+    private final Semaphore connectionPermits; // só no modo VIRTUAL
     private ServerSocket serverSocket;
-
-    public ServerRequestHandler(Invoker invoker, int port) {
-        this.invoker = invoker;
+    private final int keepAliveTimeoutMs;
+    private final int maxRequestsPerConnection;
+    private final int maxHeaderSize;
+    private final int maxBodySize;
+    private final int readBufferSize;
+    private final int chunkedResponseThreshold;
+
+    // conexões aceites que ainda esperam por uma thread, e conexões a ser atendidas
+    private final LongAdder acceptQueueDepth = new LongAdder();
+    private final LongAdder openConnections = new LongAdder();
+
+    /**
+     * @param metrics onde expor a fila de aceitação e as conexões abertas (pode ser nulo)
+     */
+    public ServerRequestHandler(RequestDispatcher dispatcher, MetricsRegistry metrics, int port, MiddlewareConfig config) {
+        this.dispatcher = dispatcher;
         this.port = port;
-        this.pool = Executors.newCachedThreadPool();
+        if (config.getExecutionMode() == ExecutionMode.VIRTUAL) {
+            this.pool = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("srh-virtual-", 0).factory());
+            this.connectionPermits = new Semaphore(config.getMaxConcurrentTasks());
+        } else {
+            this.pool = Executors.newCachedThreadPool();
+            this.connectionPermits = null;
+        }
+        this.keepAliveTimeoutMs = config.getKeepAliveTimeoutMs();
+        this.maxRequestsPerConnection = config.getMaxRequestsPerConnection();
+        this.maxHeaderSize = config.getMaxHeaderSize();
+        this.maxBodySize = config.getMaxBodySize();
+        this.readBufferSize = config.getReadBufferSize();
+        this.chunkedResponseThreshold = config.getChunkedResponseThreshold();
+
+        if (metrics != null) {
+            metrics.registerGauge("middleware_accept_queue_depth", "Conexões aceites à espera de uma thread.", acceptQueueDepth::sum);
+            metrics.registerGauge("middleware_open_connections", "Conexões a ser atendidas.", openConnections::sum);
+        }
     }
 
+    @Override
     public void start() {
         new Thread(this).start();
     }
 
+    @Override
     public void stop() {
         this.running = false;
         try {
@@ -57,9 +93,21 @@ public class ServerRequestHandler implements Runnable {
             serverSocket = new ServerSocket(port);
             Log.info("ServerRequestHandler", "Middleware server iniciado na porta %d", port);
             while (running) {
-                Socket clientSocket = serverSocket.accept();
+                // no limite de conexões simultâneas deixa de aceitar; as novas esperam no backlog do SO
+                if (connectionPermits != null) connectionPermits.acquire();
+
+                Socket clientSocket;
+                try {
+                    clientSocket = serverSocket.accept();
+                } catch (IOException e) {
+                    if (connectionPermits != null) connectionPermits.release();
+                    throw e;
+                }
+                acceptQueueDepth.increment();
                 pool.submit(() -> handleClient(clientSocket));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (IOException e) {
             if (running) {
                 Log.error("ServerRequestHandler", "Erro Crítico no ServerRequestHandler: " + e.getMessage(), e);
@@ -72,86 +120,82 @@ public class ServerRequestHandler implements Runnable {
     }
 
     private void handleClient(Socket clientSocket) {
+        acceptQueueDepth.decrement();
+        openConnections.increment();
         try (
-            BufferedReader reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream(), StandardCharsets.UTF_8));
-            PrintWriter writer = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream(), StandardCharsets.UTF_8), true)
+            InputStream in = clientSocket.getInputStream();
+            OutputStream out = new BufferedOutputStream(clientSocket.getOutputStream())
         ) {
-            // "POST /messagestore/createGroup HTTP/1.1"
-            String requestLine = reader.readLine();
-            if (requestLine == null || requestLine.isEmpty()) return;
-
-            String[] parts = requestLine.split(" ");
-            if (parts.length < 2) return;
-
-                String httpMethod = parts[0];
-                String path = parts[1];
-                Log.info("ServerRequestHandler", "Received %s request for path: %s", httpMethod, path);
-
-            // headers
-            String headerLine;
-            int contentLength = 0;
-            while ((headerLine = reader.readLine()) != null && !headerLine.isEmpty()) {
-                if (headerLine.toLowerCase().startsWith("content-length:")) {
-                    contentLength = Integer.parseInt(headerLine.split(":")[1].trim());
+            // conexão persistente: o socket fica ocioso no máximo keepAliveTimeoutMs entre pedidos
+            clientSocket.setSoTimeout(keepAliveTimeoutMs);
+            HttpRequestParser parser = new HttpRequestParser(maxHeaderSize, maxBodySize);
+            byte[] readBuffer = new byte[readBufferSize]; // reutilizado em todas as leituras da conexão
+            ResponseBuffer body = new ResponseBuffer(RESPONSE_BUFFER_INITIAL_SIZE, 2 * chunkedResponseThreshold);
+            InstanceScope scope = new InstanceScope(); // instâncias SCOPED desta conexão
+            int served = 0;
+
+            while (running) {
+                HttpRequest request;
+                try {
+                    request = parser.next();
+                } catch (BadRequestException e) {
+                    RequestDispatcher.badRequest(e).writeTo(out, false, keepAliveTimeoutMs, 0);
+                    out.flush();
+                    return;
                 }
-            }
 
-            // body
-            String requestBody = "";
-            if (contentLength > 0) {
-                char[] bodyChars = new char[contentLength];
-                reader.read(bodyChars, 0, contentLength);
-                requestBody = new String(bodyChars);
-            }
+                if (request == null) {
+                    // antes de bloquear à espera de mais bytes, envia as respostas já prontas
+                    out.flush();
+                    int read;
+                    try {
+                        read = in.read(readBuffer);
+                    } catch (SocketTimeoutException e) {
+                        Log.info("ServerRequestHandler", "Conexão ociosa por %d ms. Fechando.", keepAliveTimeoutMs);
+                        return;
+                    }
+                    if (read == -1) return; // cliente fechou a conexão
+                    parser.feed(readBuffer, 0, read);
+                    continue;
+                }
 
-            String responseBody;
-            int statusCode = 200;
-            String statusMessage = "OK";
+                Log.info("ServerRequestHandler", "Received %s request for path: %s", request.getHttpMethod(), request.getPath());
 
-            try {
-                responseBody = invoker.invoke(httpMethod, path, requestBody);
-
-            } catch (AuthException e) {
-                statusCode = 403;
-                statusMessage = "Acesso Negado";
-                responseBody = "{\"error\": \"" + e.getMessage().replace("\"", "'") + "\"}";
-                Log.warn("ServerRequestHandler", "Erro de Autorização [403]: " + e.getMessage());
-
-            }catch (RouteNotFoundException e) {
-                statusCode = 404;
-                statusMessage = "Não Encontrado";
-                responseBody = "{\"error\": \"" + e.getMessage().replace("\"", "'") + "\"}";
-                Log.error("ServerRequestHandler", "Erro do Cliente [404]: " + e.getMessage(), e);
-
-            } catch (JsonProcessingException e) {
-                statusCode = 400;
-                statusMessage = "Requisição Inválida";
-                responseBody = "{\"error\": \"Formato JSON ou campos inválidos.\", \"details\": \"" + e.getMessage().replace("\"", "'") + "\"}";
-                Log.error("ServerRequestHandler", "Erro do Cliente [400]: Requisição JSON inválida. " + e.getMessage(), e);
-
-            } catch (InvocationTargetException e) {
-
-                statusCode = 500;
-                statusMessage = "Erro Interno do Servidor";
-                responseBody = "{\"error\": \"Erro ao executar a lógica de negócio.\", \"details\": \"" + e.getTargetException().getMessage().replace("\"", "'") + "\"}";
-                Log.error("ServerRequestHandler", "Erro do Servidor [500]: Exceção no método remoto. Detalhes:", e.getTargetException());
-
-            } catch (Exception e) {
-
-                statusCode = 500;
-                statusMessage = "Erro Interno do Servidor";
-                responseBody = "{\"error\": \"Ocorreu um erro inesperado.\", \"details\": \"" + e.getMessage().replace("\"", "'") + "\"}";
-                Log.error("ServerRequestHandler", "Erro no Middleware [500]: " + e.getMessage(), e);
-            }
+                served++;
+                boolean keepAlive = request.isKeepAlive() && served < maxRequestsPerConnection && running;
 
-            // resposta
-            writer.println("HTTP/1.1 " + statusCode + " " + statusMessage);
-            writer.println("Content-Type: application/json; charset=UTF-8");
-            writer.println("Content-Length: " + responseBody.getBytes(StandardCharsets.UTF_8).length);
-            writer.println("Connection: close");
-            writer.println(); // Linha em branco
-            writer.println(responseBody);
-            writer.flush();
+                // pedidos em pipeline já no buffer são respondidos em ordem; o flush só acontece
+                // quando o parser precisar de ler do socket outra vez
+                int remaining = maxRequestsPerConnection - served;
+                boolean chunkedKeepAlive = keepAlive;
+
+                // resultados grandes saem em chunks à medida que o Marshaller os escreve
+                body.clear();
+                body.enableChunking(out, chunkedResponseThreshold,
+                        sink -> HttpResponse.writeChunkedHead(sink, chunkedKeepAlive, keepAliveTimeoutMs, remaining));
+                HttpResponse response = dispatcher.dispatch(request, body, scope);
+
+                if (response.getEventStream() != null) {
+                    streamEvents(response, out);
+                    return;
+                }
+
+                if (body.isCommitted()) {
+                    if (response.getStatusCode() != 200) {
+                        // falhou depois de parte do corpo ter saído: sem o chunk final o cliente vê a resposta incompleta
+                        Log.error("ServerRequestHandler", "Erro depois do início de uma resposta chunked. Fechando a conexão.");
+                        return;
+                    }
+                    body.finish();
+                } else {
+                    response.writeTo(out, keepAlive, keepAliveTimeoutMs, remaining);
+                }
+
+                if (!keepAlive) {
+                    out.flush();
+                    return;
+                }
+            }
 
         } catch (IOException e) {
             Log.error("ServerRequestHandler", "Erro ao lidar com a requisição do cliente: " + e.getMessage(), e);
@@ -161,6 +205,29 @@ public class ServerRequestHandler implements Runnable {
             } catch (IOException e) {
                 Log.error("ServerRequestHandler", "Erro ao fechar o socket do cliente: " + e.getMessage(), e);
             }
+            if (connectionPermits != null) connectionPermits.release();
+            openConnections.decrement();
+        }
+    }
+
+    // Envia os eventos de um stream até o sink fechar ou o cliente desistir; a conexão fecha no fim.
+    // Sem eventos durante heartbeatMs vai um comentário, que também serve para detetar o cliente que saiu.
+    private void streamEvents(HttpResponse response, OutputStream out) {
+        QueuedEventSink sink = response.getEventStream();
+        try {
+            response.writeTo(out, false, keepAliveTimeoutMs, 0);
+            out.flush();
+            byte[] frame;
+            while (running && (frame = sink.take(sink.getHeartbeatMs())) != null) {
+                out.write(frame);
+                out.flush();
+            }
+        } catch (IOException e) {
+            Log.info("ServerRequestHandler", "Cliente do stream de eventos desligou-se: %s", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sink.close();
         }
     }
 }
@@ -0,0 +1,12 @@
+package middleware.component_model.remoting;
+
+/**
+ * Camada de transporte que recebe pedidos HTTP e os entrega ao Invoker.
+ * O Middleware escolhe a implementação a partir de {@link TransportType}.
+ */
+public interface ServerTransport {
+
+    void start();
+
+    void stop();
+}
@@ -0,0 +1,8 @@
+package middleware.component_model.remoting;
+
+public enum TransportType {
+    // uma thread por conexão, com ServerSocket bloqueante (ServerRequestHandler)
+    BLOCKING,
+    // event loops com Selector e um pool limitado de workers (NioServerRequestHandler)
+    NIO
+}
@@ -0,0 +1,7 @@
+package middleware.exceptions;
+
+public class BadRequestException extends Exception {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
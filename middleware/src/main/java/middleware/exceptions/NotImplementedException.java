@@ -0,0 +1,8 @@
+package middleware.exceptions;
+
+// Pedido bem formado que usa algo que o servidor não implementa (ex.: Transfer-Encoding); responde 501.
+public class NotImplementedException extends BadRequestException {
+    public NotImplementedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package middleware.exceptions;
+
+/**
+ * Um ObjectPool limitado não conseguiu emprestar uma instância dentro do tempo de espera.
+ * Não é verificada para poder sair do {@code borrowObject()}; o LifecycleManager converte-a em 503.
+ */
+public class PoolExhaustedException extends RuntimeException {
+    public PoolExhaustedException(String message) {
+        super(message);
+    }
+}
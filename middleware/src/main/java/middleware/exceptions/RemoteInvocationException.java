@@ -0,0 +1,11 @@
+package middleware.exceptions;
+
+/**
+ * Exceção lançada pelo próprio método remoto (lógica de negócio), distinta das falhas do middleware.
+ * A exceção original fica disponível em {@link #getCause()}.
+ */
+public class RemoteInvocationException extends Exception {
+    public RemoteInvocationException(Throwable cause) {
+        super(cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,16 @@
+package middleware.exceptions;
+
+public class ServiceUnavailableException extends Exception {
+
+    // segundos sugeridos ao cliente no header Retry-After
+    private final int retryAfterSeconds;
+
+    public ServiceUnavailableException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
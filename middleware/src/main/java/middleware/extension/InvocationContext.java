@@ -1,25 +1,32 @@
 package middleware.extension;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import middleware.component_model.identification.AbsoluteObjectReference;
+import middleware.lifecycle.InstanceScope;
 
 public class InvocationContext {
 
     private String httpMethod;
     private String fullPath;
     private String requestBody;
+    private byte[] requestBodyBuffer;
+    private int requestBodyOffset;
+    private int requestBodyLength;
 
     private AbsoluteObjectReference absoluteObjectReference;
     private Object targetObject;
     private Object[] methodParameters;
+    private List<?> batch; // itens do @RequestBody numa rota @Batch, senão null
+    private InstanceScope scope; // conexão ou envelope do pedido; pode ser null
 
     private Object result;
     private Exception exception;
 
-    private final Map<String, Object> attributes = new HashMap<>();
-    private Map<String, String> requestHeaders = new HashMap<>();
+    private Map<String, Object> attributes; // criado só quando algum interceptador o usa
 
     public String getHttpMethod() { return httpMethod; }
     public void setHttpMethod(String httpMethod) { this.httpMethod = httpMethod; }
@@ -27,8 +34,23 @@ public class InvocationContext {
     public String getFullPath() { return fullPath; }
     public void setFullPath(String fullPath) { this.fullPath = fullPath; }
 
-    public String getRequestBody() { return requestBody; }
-    public void setRequestBody(String requestBody) { this.requestBody = requestBody; }
+    // o corpo chega como bytes; a String só é criada se algum interceptador a pedir
+    public String getRequestBody() {
+        if (requestBody == null && requestBodyBuffer != null) {
+            requestBody = new String(requestBodyBuffer, requestBodyOffset, requestBodyLength, StandardCharsets.UTF_8);
+        }
+        return requestBody;
+    }
+    public void setRequestBody(String requestBody) {
+        this.requestBody = requestBody;
+        this.requestBodyBuffer = null;
+    }
+    public void setRequestBody(byte[] buffer, int offset, int length) {
+        this.requestBody = null;
+        this.requestBodyBuffer = buffer;
+        this.requestBodyOffset = offset;
+        this.requestBodyLength = length;
+    }
 
     public AbsoluteObjectReference getAbsoluteObjectReference() { return absoluteObjectReference; }
     public void setAbsoluteObjectReference(AbsoluteObjectReference absoluteObjectReference) { this.absoluteObjectReference = absoluteObjectReference; }
@@ -39,6 +61,15 @@ public class InvocationContext {
     public Object[] getMethodParameters() { return methodParameters; }
     public void setMethodParameters(Object[] methodParameters) { this.methodParameters = methodParameters; }
 
+    // numa rota @Batch, a lista de itens (a mesma que o método recebe), para ser tratada de uma vez
+    public List<?> getBatch() { return batch; }
+    public void setBatch(List<?> batch) { this.batch = batch; }
+    public boolean isBatch() { return batch != null; }
+
+    // onde ficam as instâncias SCOPED deste pedido
+    public InstanceScope getScope() { return scope; }
+    public void setScope(InstanceScope scope) { this.scope = scope; }
+
     public Object getResult() { return result; }
     public void setResult(Object result) { this.result = result; }
 
@@ -46,7 +77,10 @@ public class InvocationContext {
     public void setException(Exception exception) { this.exception = exception; }
 
     // para dados personalizados pelos interceptadores
-    public Map<String, Object> getAttributes() { return attributes; }
+    public Map<String, Object> getAttributes() {
+        if (attributes == null) attributes = new HashMap<>();
+        return attributes;
+    }
 
     public boolean hasException() {
         return this.exception != null;
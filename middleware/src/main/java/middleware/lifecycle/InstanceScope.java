@@ -0,0 +1,32 @@
+package middleware.lifecycle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Âmbito das instâncias SCOPED: uma conexão (criado pelo transporte) ou um envelope multi-invoke
+ * sequencial. Os pedidos de um âmbito correm um de cada vez, por isso as instâncias guardadas não
+ * precisam de ser thread-safe; quando o âmbito deixa de ser usado, vão com ele para o GC.
+ */
+public final class InstanceScope {
+
+    private volatile Map<Class<?>, Object> instances; // criado no primeiro componente SCOPED
+
+    Object get(Class<?> componentClass) {
+        Map<Class<?>, Object> current = instances;
+        return current != null ? current.get(componentClass) : null;
+    }
+
+    void put(Class<?> componentClass, Object instance) {
+        Map<Class<?>, Object> current = instances;
+        if (current == null) {
+            synchronized (this) {
+                current = instances;
+                if (current == null) {
+                    instances = current = new ConcurrentHashMap<>();
+                }
+            }
+        }
+        current.put(componentClass, instance);
+    }
+}
@@ -0,0 +1,52 @@
+package middleware.lifecycle;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+
+/**
+ * Como criar uma instância de um componente: o construtor escolhido, já com os STATIC_INSTANCEs
+ * injetados, compilado num MethodHandle sem argumentos. É resolvido uma vez por classe; criar uma
+ * instância por pedido passa a ser só a chamada ao construtor.
+ *
+ * Guarda a geração dos STATIC_INSTANCEs com que foi resolvido: quando um novo é registado, o plano
+ * deixa de valer e é resolvido de novo (o novo singleton pode satisfazer um construtor maior).
+ */
+final class InstantiationPlan {
+
+    private final MethodHandle factory; // () -> Object
+    private final int staticGeneration;
+
+    private InstantiationPlan(MethodHandle factory, int staticGeneration) {
+        this.factory = factory;
+        this.staticGeneration = staticGeneration;
+    }
+
+    /**
+     * @param dependencies os STATIC_INSTANCEs a passar ao construtor, pela ordem dos parâmetros
+     * @throws IllegalAccessException se o construtor não puder ser acedido
+     */
+    static InstantiationPlan of(Constructor<?> constructor, Object[] dependencies, int staticGeneration) throws IllegalAccessException {
+        if (!Modifier.isPublic(constructor.getModifiers()) || !Modifier.isPublic(constructor.getDeclaringClass().getModifiers())) {
+            constructor.setAccessible(true);
+        }
+        MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+        if (dependencies.length > 0) {
+            handle = MethodHandles.insertArguments(handle, 0, dependencies);
+        }
+        return new InstantiationPlan(handle.asType(MethodType.methodType(Object.class)), staticGeneration);
+    }
+
+    boolean isCurrent(int generation) {
+        return staticGeneration == generation;
+    }
+
+    /**
+     * @throws Throwable o que o construtor lançar
+     */
+    Object newInstance() throws Throwable {
+        return (Object) factory.invokeExact();
+    }
+}
@@ -1,94 +1,244 @@
 package middleware.lifecycle;
 
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Parameter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import middleware.component_model.identification.AbsoluteObjectReference;
+import middleware.exceptions.PoolExhaustedException;
+import middleware.exceptions.ServiceUnavailableException;
 import middleware.lifecycle.annotations.LifecyclePolicyType;
 import middleware.lifecycle.annotations.Pooled;
 import middleware.lifecycle.pooling.ObjectPool;
+import middleware.lifecycle.pooling.Poolable;
+import middleware.metrics.MetricsRegistry;
 import middleware.util.Log;
 
 public class LifecycleManager {
 
     private final Map<Class<?>, Object> staticInstanceCache = new ConcurrentHashMap<>();
     private final Map<Class<?>, ObjectPool<?>> perRequestPools = new ConcurrentHashMap<>();
+    // como instanciar cada componente, resolvido na primeira instanciação
+    private final Map<Class<?>, InstantiationPlan> plans = new ConcurrentHashMap<>();
+    private final AtomicInteger staticGeneration = new AtomicInteger();
+    private final Map<Class<?>, ThreadLocal<Object>> threadLocals = new ConcurrentHashMap<>();
+    // componentes registados, por ordem de registo, para o warmup
+    private final Map<Class<?>, LifecyclePolicyType> components = Collections.synchronizedMap(new LinkedHashMap<>());
 
-    private static final int DEFAULT_POOL_MIN_IDLE = 1;
-    private static final int DEFAULT_POOL_MAX_SIZE = 10;
+    // pode ser nulo (métricas desligadas)
+    private final MetricsRegistry metrics;
+    private final int retryAfterSeconds; // Retry-After do 503 quando um pool @Pooled se esgota
 
     public LifecycleManager() {
+        this(null);
+    }
+
+    public LifecycleManager(MetricsRegistry metrics) {
+        this(metrics, 1);
+    }
+
+    public LifecycleManager(MetricsRegistry metrics, int retryAfterSeconds) {
+        this.metrics = metrics;
+        this.retryAfterSeconds = retryAfterSeconds;
         Log.info("LifecycleManager", "LifecycleManager inicializado.");
     }
 
     public void cacheStaticInstance(Class<?> componentClass, Object instance) {
         if (componentClass != null && instance != null) {
             // o putIfAbsent evita sobrescrever uma instância já existente
-            staticInstanceCache.putIfAbsent(componentClass, instance);
+            if (staticInstanceCache.putIfAbsent(componentClass, instance) == null) {
+                invalidatePlans();
+            }
         }
     }
 
+    /**
+     * Regista a política de um componente, para o {@link #warmUp()} saber o que preparar.
+     */
+    public void registerComponent(Class<?> componentClass, LifecyclePolicyType policy) {
+        components.putIfAbsent(componentClass, policy);
+    }
+
+    /**
+     * Como {@link #getInstance(AbsoluteObjectReference, InstanceScope)}, sem âmbito: um componente
+     * SCOPED recebe uma instância nova.
+     */
+    public Object getInstance(AbsoluteObjectReference absoluteReference) throws Exception {
+        return getInstance(absoluteReference, null);
+    }
+
     /**
      *
      * @param absoluteReference A referência absoluta do objeto contendo a política e a classe/instância.
+     * @param scope o âmbito do pedido (conexão ou envelope) para componentes SCOPED; pode ser nulo
      * @return A instância do objeto a ser usada para a invocação.
+     * @throws ServiceUnavailableException se o pool de um componente @Pooled não tiver instância livre a tempo
      * @throws Exception Se ocorrer um erro ao criar uma instância (para PerRequest).
      */
-    public Object getInstance(AbsoluteObjectReference absoluteReference) throws Exception {
+    public Object getInstance(AbsoluteObjectReference absoluteReference, InstanceScope scope) throws Exception {
         LifecyclePolicyType policy = absoluteReference.getPolicyType();
         Class<?> componentClass = absoluteReference.getRemoteObjectClass();
 
-        if (policy == LifecyclePolicyType.STATIC_INSTANCE) {
-            Log.info("LifecycleManager", "Retornando instância STATIC_INSTANCE para: " + componentClass.getSimpleName());
-            return staticInstanceCache.computeIfAbsent(componentClass, classe -> {
-                try {
-                    Log.info("LifecycleManager", "Ausência no cache para STATIC_INSTANCE " + classe.getSimpleName() + ". Criando (lazy) ...");
-                    return createInstance(classe);
-                } catch (Exception e) {
-                    throw new RuntimeException("Falha ao criar instância lazy para " + classe.getName(), e);
-                }
-            });
-
-        } else if (policy == LifecyclePolicyType.PER_REQUEST) {
-        if (componentClass.isAnnotationPresent(Pooled.class)) {
-            Log.info("LifecycleManager", "Requisitando instância PER_REQUEST  anotado com @Pooled para :" + componentClass.getSimpleName());
-
-                    ObjectPool<?> pool = perRequestPools.computeIfAbsent(componentClass, classe -> {
-                        Log.info("LifecycleManager", "Criando novo ObjectPool para a classe: " + classe.getSimpleName());
-                        Supplier<?> factory = () -> {
-                            try {
-                                return createInstance(classe);
-                            } catch (Exception e) {
-                                throw new RuntimeException("Falha ao criar instância no ObjectPool para " + classe.getName(), e);
-                            }
-                        };
-                        return new ObjectPool<>(DEFAULT_POOL_MIN_IDLE, DEFAULT_POOL_MAX_SIZE, factory);
-                    });
-
+        switch (policy) {
+            case STATIC_INSTANCE, LAZY_SINGLETON -> {
+                Log.info("LifecycleManager", "Retornando instância %s para: %s", policy, componentClass.getSimpleName());
+                return singleton(componentClass);
+            }
+            case PER_REQUEST -> {
+                if (componentClass.isAnnotationPresent(Pooled.class)) {
+                    Log.info("LifecycleManager", "Requisitando instância PER_REQUEST  anotado com @Pooled para :%s", componentClass.getSimpleName());
                     try {
-                        Object instance = pool.borrowObject();
+                        Object instance = poolFor(componentClass).borrowObject();
 
-                        Log.info("LifecycleManager", "Instância obtida do pool para: " + componentClass.getSimpleName() + " (Instance: " + instance.hashCode() + ")");
+                        if (Log.isInfoEnabled()) {
+                            Log.info("LifecycleManager", "Instância obtida do pool para: %s (Instance: %d)", componentClass.getSimpleName(), instance.hashCode());
+                        }
                         return instance;
+                    } catch (PoolExhaustedException e) {
+                        throw new ServiceUnavailableException(e.getMessage(), retryAfterSeconds);
                     } catch (RuntimeException e) {
                         throw new Exception("Falha ao criar instância (via pool) para: " + componentClass.getSimpleName(), e);
                     }
-                } else {
-                    Log.info("LifecycleManager", "Requisitando instância PER_REQUEST para: " + componentClass.getSimpleName());
-                    return createInstance(componentClass);
                 }
-        } else {
-            throw new UnsupportedOperationException("Política de ciclo de vida não suportada: " + policy);
+                Log.info("LifecycleManager", "Requisitando instância PER_REQUEST para: %s", componentClass.getSimpleName());
+                return createInstance(componentClass);
+            }
+            case THREAD_LOCAL -> {
+                // uma virtual thread serve uma conexão ou uma tarefa e não é reutilizada: um ThreadLocal
+                // criaria uma instância por thread; o âmbito do pedido dá a mesma reutilização
+                if (Thread.currentThread().isVirtual()) {
+                    return scoped(componentClass, scope);
+                }
+                ThreadLocal<Object> local = threadLocals.computeIfAbsent(componentClass, classe -> new ThreadLocal<>());
+                Object instance = local.get();
+                if (instance == null) {
+                    Log.info("LifecycleManager", "Criando instância THREAD_LOCAL de %s para a thread %s", componentClass.getSimpleName(), Thread.currentThread().getName());
+                    instance = createInstance(componentClass);
+                    local.set(instance);
+                }
+                return instance;
+            }
+            case SCOPED -> {
+                return scoped(componentClass, scope);
+            }
+            default -> throw new UnsupportedOperationException("Política de ciclo de vida não suportada: " + policy);
+        }
+    }
+
+    // STATIC_INSTANCE registado, ou criado (lazy) na primeira utilização
+    private Object singleton(Class<?> componentClass) {
+        Object cached = staticInstanceCache.get(componentClass);
+        if (cached != null) {
+            return cached;
+        }
+        Object created = staticInstanceCache.computeIfAbsent(componentClass, classe -> {
+            try {
+                Log.info("LifecycleManager", "Ausência no cache para STATIC_INSTANCE %s. Criando (lazy) ...", classe.getSimpleName());
+                return createInstance(classe);
+            } catch (Exception e) {
+                throw new RuntimeException("Falha ao criar instância lazy para " + classe.getName(), e);
+            }
+        });
+        invalidatePlans();
+        return created;
+    }
+
+    private ObjectPool<?> poolFor(Class<?> componentClass) {
+        return perRequestPools.computeIfAbsent(componentClass, classe -> {
+            Log.info("LifecycleManager", "Criando novo ObjectPool para a classe: %s", classe.getSimpleName());
+            Supplier<?> factory = () -> {
+                try {
+                    return createInstance(classe);
+                } catch (Exception e) {
+                    throw new RuntimeException("Falha ao criar instância no ObjectPool para " + classe.getName(), e);
+                }
+            };
+            Pooled config = classe.getAnnotation(Pooled.class);
+            boolean poolable = Poolable.class.isAssignableFrom(classe);
+            ObjectPool<?> created = new ObjectPool<>(config.min(), config.max(), config.timeoutMs(), config.idleTimeoutMs(), factory,
+                    poolable ? instance -> ((Poolable) instance).validate() : null,
+                    poolable ? instance -> ((Poolable) instance).reset() : null);
+            if (metrics != null) {
+                metrics.registerPool(classe.getSimpleName(), created);
+            }
+            return created;
+        });
+    }
+
+    // sem âmbito (ex.: Invoker usado diretamente) cada invocação recebe uma instância nova
+    private Object scoped(Class<?> componentClass, InstanceScope scope) throws Exception {
+        if (scope == null) {
+            return createInstance(componentClass);
+        }
+        Object instance = scope.get(componentClass);
+        if (instance == null) {
+            Log.info("LifecycleManager", "Criando instância SCOPED de %s", componentClass.getSimpleName());
+            instance = createInstance(componentClass);
+            scope.put(componentClass, instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Prepara os componentes registados antes do primeiro pedido: cria os LAZY_SINGLETONs, os pools
+     * dos componentes @Pooled (com as suas instâncias mínimas) e os planos de instanciação dos
+     * restantes, para que os primeiros pedidos depois do arranque não paguem a construção.
+     * Uma falha é registada no log e o componente fica para ser criado no primeiro pedido.
+     */
+    public void warmUp() {
+        long start = System.nanoTime();
+        // primeiro os singletons: podem ser dependências dos construtores dos outros
+        components.forEach((componentClass, policy) -> {
+            if (policy == LifecyclePolicyType.LAZY_SINGLETON) {
+                warmUp(componentClass, () -> singleton(componentClass));
+            }
+        });
+        components.forEach((componentClass, policy) -> {
+            if (policy == LifecyclePolicyType.PER_REQUEST && componentClass.isAnnotationPresent(Pooled.class)) {
+                warmUp(componentClass, () -> poolFor(componentClass));
+            } else if (policy != LifecyclePolicyType.STATIC_INSTANCE && policy != LifecyclePolicyType.LAZY_SINGLETON) {
+                warmUp(componentClass, () -> plans.put(componentClass, plan(componentClass)));
+            }
+        });
+        Log.info("LifecycleManager", "Warmup de %d componente(s) em %d ms.", components.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private interface WarmupStep {
+        void run() throws Exception;
+    }
+
+    private static void warmUp(Class<?> componentClass, WarmupStep step) {
+        try {
+            step.run();
+        } catch (Exception e) {
+            Log.error("LifecycleManager", "Falha no warmup de " + componentClass.getName() + ": " + e.getMessage(), e);
         }
     }
 
     private Object createInstance(Class<?> componentClass) throws Exception {
+        InstantiationPlan plan = plans.get(componentClass);
+        if (plan == null || !plan.isCurrent(staticGeneration.get())) {
+            plan = plan(componentClass);
+            plans.put(componentClass, plan);
+        }
+        try {
+            return plan.newInstance();
+        } catch (Throwable t) {
+            throw new Exception("Falha ao instanciar componente " + componentClass.getName() + ".", t);
+        }
+    }
+
+    // escolhe o construtor com mais parâmetros que os STATIC_INSTANCEs atuais satisfazem
+    // (ou o construtor padrão) e resolve as dependências dele; só corre quando não há plano válido
+    private InstantiationPlan plan(Class<?> componentClass) throws Exception {
+        int generation = staticGeneration.get(); // lida antes da procura: um registo a meio invalida o plano
         Constructor<?> bestConstructor = null;
         Object[] argsForBestConstructor = null;
 
@@ -121,30 +271,37 @@ public class LifecycleManager {
 
         try {
             if (bestConstructor != null) {
-                 Log.info("LifecycleManager", "Invocando construtor de " + componentClass.getSimpleName() + " com " + bestConstructor.getParameterCount() + " argumento(s) (STATIC_INSTANCE injetados).");
-                return bestConstructor.newInstance(argsForBestConstructor);
+                 Log.info("LifecycleManager", "Plano de %s: construtor com %d argumento(s) (STATIC_INSTANCE injetados).", componentClass.getSimpleName(), bestConstructor.getParameterCount());
+                return InstantiationPlan.of(bestConstructor, argsForBestConstructor, generation);
             } else {
-                 Log.info("LifecycleManager", "Nenhum construtor com STATIC_INSTANCEs compatível encontrado para " + componentClass.getSimpleName() + ". Tentando construtor padrão.");
-                return componentClass.getDeclaredConstructor().newInstance();
+                 Log.info("LifecycleManager", "Nenhum construtor com STATIC_INSTANCEs compatível encontrado para %s. Usando construtor padrão.", componentClass.getSimpleName());
+                return InstantiationPlan.of(componentClass.getDeclaredConstructor(), new Object[0], generation);
             }
         } catch (NoSuchMethodException e) {
              throw new Exception("Componente " + componentClass.getName() + " não possui construtor compatível (nem padrão, nem com STATIC_INSTANCEs injetáveis).", e);
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            throw new Exception("Falha ao instanciar componente " + componentClass.getName() + ".", e);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new Exception("Falha ao preparar a instanciação do componente " + componentClass.getName() + ".", e);
         }
     }
 
     private Object findCachedStaticInstanceAssignableTo(Class<?> requiredType) {
         for (Map.Entry<Class<?>, Object> entry : staticInstanceCache.entrySet()) {
             if (requiredType.isAssignableFrom(entry.getKey())) {
-                 Log.info("LifecycleManager", "Encontrado STATIC_INSTANCE em cache (" + entry.getKey().getSimpleName() + ") para o tipo requisitado (" + requiredType.getSimpleName() + ")");
+                 Log.info("LifecycleManager", "Encontrado STATIC_INSTANCE em cache (%s) para o tipo requisitado (%s)", entry.getKey().getSimpleName(), requiredType.getSimpleName());
                 return entry.getValue();
             }
         }
-        Log.info("LifecycleManager", "Nenhum STATIC_INSTANCE em cache compatível encontrado para o tipo requisitado (" + requiredType.getSimpleName() + ")");
+        Log.info("LifecycleManager", "Nenhum STATIC_INSTANCE em cache compatível encontrado para o tipo requisitado (%s)", requiredType.getSimpleName());
         return null;
     }
 
+    // chamado quando os STATIC_INSTANCEs mudam: um novo pode satisfazer construtores que antes não
+    // eram, por isso os planos são refeitos
+    private void invalidatePlans() {
+        staticGeneration.incrementAndGet();
+        plans.clear();
+    }
+
     /**
      * Devolve um objeto ao pool apropriado. Chamado pelo Invoker.
      * @param instance O objeto a ser devolvido.
@@ -161,7 +318,9 @@ public class LifecycleManager {
 
             if (pool != null) {
                 try {
-                    Log.info("LifecycleManager", "Devolvendo instância ao pool: " + componentClass.getSimpleName() + " (Instance: " + instance.hashCode() + ")");
+                    if (Log.isInfoEnabled()) {
+                        Log.info("LifecycleManager", "Devolvendo instância ao pool: %s (Instance: %d)", componentClass.getSimpleName(), instance.hashCode());
+                    }
                     // O cast é necessário para chamar returnObject sem warnings de genéricos
                     @SuppressWarnings("unchecked")
                     ObjectPool<Object> typedPool = (ObjectPool<Object>) pool;
@@ -173,7 +332,9 @@ public class LifecycleManager {
                 Log.error("LifecycleManager", "WARN: Tentativa de devolver instância ao pool, mas nenhum pool encontrado para a classe: " + componentClass.getName());
             }
         } else {
-             Log.info("LifecycleManager", "Instância PER_REQUEST descartada: " + componentClass.getSimpleName() + " (Instance: " + instance.hashCode() + ")");
+             if (Log.isInfoEnabled()) {
+                 Log.info("LifecycleManager", "Instância PER_REQUEST descartada: %s (Instance: %d)", componentClass.getSimpleName(), instance.hashCode());
+             }
          }
      }
 
@@ -184,7 +345,9 @@ public class LifecycleManager {
          Log.info("LifecycleManager", "Encerrando pools de objetos...");
          perRequestPools.values().forEach(ObjectPool::close);
          perRequestPools.clear();
+         threadLocals.clear();
          staticInstanceCache.clear(); // Limpa também o cache de singletons lazy
+         invalidatePlans();
          Log.info("LifecycleManager", "Pools encerrados.");
      }
 }
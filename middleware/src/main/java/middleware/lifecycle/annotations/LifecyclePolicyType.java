@@ -1,6 +1,15 @@
 package middleware.lifecycle.annotations;
 
 public enum LifecyclePolicyType {
+    // a instância registada, partilhada por todos os pedidos
     STATIC_INSTANCE,
-    PER_REQUEST
+    // uma instância nova (ou do pool, com @Pooled) por pedido
+    PER_REQUEST,
+    // uma instância partilhada criada pelo LifecycleManager (com injeção) no warmup ou na primeira utilização;
+    // a instância registada serve só para descobrir as rotas
+    LAZY_SINGLETON,
+    // uma instância por thread de plataforma; numa virtual thread, uma por âmbito (como SCOPED)
+    THREAD_LOCAL,
+    // uma instância por conexão, ou por envelope multi-invoke sequencial
+    SCOPED
 }
@@ -6,9 +6,22 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * indicar que as instâncias devem ser gerenciadas por um ObjectPool
+ * indicar que as instâncias devem ser gerenciadas por um ObjectPool limitado: no máximo max
+ * instâncias em uso; um pedido que espere mais de timeoutMs por uma recebe 503.
+ * Componentes que implementem {@link middleware.lifecycle.pooling.Poolable} são validados e limpos pelo pool.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE) 
 public @interface Pooled {
+
+    // instâncias criadas no arranque do pool e mantidas mesmo paradas
+    int min() default 1;
+
+    int max() default 10;
+
+    // espera máxima por uma instância livre (0: falha logo)
+    long timeoutMs() default 1000;
+
+    // instâncias acima de min paradas há mais do que isto são destruídas (0: nunca)
+    long idleTimeoutMs() default 60_000;
 }
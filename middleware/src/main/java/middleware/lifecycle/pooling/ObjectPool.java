@@ -1,66 +1,205 @@
 package middleware.lifecycle.pooling;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
+import middleware.exceptions.PoolExhaustedException;
 import middleware.util.Log;
 
 /**
- * Um pool de objetos simplificado para reutilização de instâncias.
+ * Pool de objetos para reutilização de instâncias, em dois modos:
+ *
+ * - elástico: nunca bloqueia; com o pool vazio cria um objeto novo e maxSize limita só quantos
+ *   ficam guardados (ex.: buffers do transporte NIO, que não podem esperar no event loop);
+ * - limitado: maxSize é o máximo de objetos que existem ao mesmo tempo; com todos emprestados o
+ *   borrow espera até borrowTimeoutMs e depois falha com {@link PoolExhaustedException}.
+ *
+ * Os objetos livres ficam numa pilha (o último devolvido é o primeiro a sair, ainda quente) e as
+ * contagens são contadores atómicos, por isso nenhuma operação percorre o pool. À frente da pilha
+ * há uma faixa pequena por thread (escolhida pelo id da thread, uma por núcleo): o borrow e o
+ * return tentam primeiro a sua faixa, e só usam a pilha partilhada quando ela está vazia ou
+ * cheia; sem nada na faixa nem na pilha, o borrow rouba das outras faixas antes de criar um
+ * objeto. Assim threads diferentes raramente disputam a mesma posição de memória. Com idleTimeoutMs
+ * um sweeper em segundo plano destrói os objetos parados há mais tempo que isso, sem descer de
+ * minIdle, e repõe minIdle se faltarem objetos.
+ *
  * @param <T> O tipo de objeto que o pool irá gerir.
  */
 public class ObjectPool<T> {
 
-    // Fila não-bloqueante e thread-safe
-    private final ConcurrentLinkedQueue<T> pool;
+    // uma só thread para os sweepers de todos os pools
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "object-pool-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // faixas: a potência de 2 a partir do dobro dos núcleos (até 64), cada uma com STRIPE_SLOTS posições
+    // espaçadas de STRIPE_STRIDE referências (64 bytes) para não partilharem linha de cache
+    private static final int STRIPES = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2);
+    private static final int STRIPE_SLOTS = 2;
+    private static final int STRIPE_STRIDE = 16;
+
+    private record Idle<T>(T object, long returnedAtNanos) {}
+
+    private final AtomicReferenceArray<Idle<T>> stripes = new AtomicReferenceArray<>(STRIPES * STRIPE_STRIDE);
+    private final ConcurrentLinkedDeque<Idle<T>> idle = new ConcurrentLinkedDeque<>(); // partilhada
     private final Supplier<T> objectFactory;
+    private final Predicate<? super T> validator; // testado no borrow; null: todos são válidos
+    private final Consumer<? super T> reset;      // aplicado no return; null: nada a fazer
+    private final int minIdle;
     private final int maxSize;
+    private final long borrowTimeoutMs;
+    private final long idleTimeoutNanos;
+    private final Semaphore permits; // só no modo limitado: um por objeto emprestado
+
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger totalCount = new AtomicInteger(); // existentes: livres + emprestados
+    private final ScheduledFuture<?> sweeper;
+    private volatile boolean closed;
+
+    // estatísticas para o MetricsRegistry
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder steals = new LongAdder();
 
     /**
-     * Cria um novo ObjectPool simplificado.
+     * Cria um pool elástico: o borrow nunca bloqueia.
      *
-     * @param preInstances       Número de instâncias para pré-carregar
+     * @param preInstances  Número de instâncias para pré-carregar
      * @param maxSize       Número máximo de instâncias para *manter* no pool.
      * @param objectFactory O Supplier que sabe como criar novas instâncias de T.
      */
     public ObjectPool(int preInstances, int maxSize, Supplier<T> objectFactory) {
-        if (preInstances < 0 || maxSize <= 0 || preInstances > maxSize) {
+        this(preInstances, maxSize, -1, 0, objectFactory, null, null);
+    }
+
+    /**
+     * Cria um pool limitado (ou elástico, com borrowTimeoutMs negativo).
+     *
+     * @param minIdle         instâncias criadas já e mantidas pelo sweeper
+     * @param maxSize         máximo de instâncias em existência (no modo elástico, guardadas)
+     * @param borrowTimeoutMs espera máxima de um borrow com todas emprestadas (0: falha logo; negativo: modo elástico)
+     * @param idleTimeoutMs   tempo parado depois do qual uma instância acima de minIdle é destruída (0: nunca)
+     * @param validator       testa uma instância livre antes de a emprestar; as inválidas são destruídas (pode ser nulo)
+     * @param reset           limpa o estado de uma instância devolvida; se falhar, a instância é destruída (pode ser nulo)
+     */
+    public ObjectPool(int minIdle, int maxSize, long borrowTimeoutMs, long idleTimeoutMs, Supplier<T> objectFactory,
+                      Predicate<? super T> validator, Consumer<? super T> reset) {
+        if (minIdle < 0 || maxSize <= 0 || minIdle > maxSize || idleTimeoutMs < 0) {
             throw new IllegalArgumentException("Parâmetros de tamanho do pool inválidos.");
         }
-        this.pool = new ConcurrentLinkedQueue<>();
         this.objectFactory = objectFactory;
+        this.validator = validator;
+        this.reset = reset;
+        this.minIdle = minIdle;
         this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.permits = borrowTimeoutMs >= 0 ? new Semaphore(maxSize, true) : null;
 
         // Pré-carrega o pool com o número mínimo
-        for (int i = 0; i < preInstances; i++) {
-            pool.offer(createObject()); // Usa o método auxiliar
-        }
-        Log.info("ObjectPool", "ObjectPool inicializado com %d instâncias (maxSize=%d).", pool.size(), maxSize);
+        fill();
+        this.sweeper = idleTimeoutMs > 0
+                ? SWEEPER.scheduleWithFixedDelay(this::sweep, idleTimeoutMs, Math.max(1, idleTimeoutMs / 2), TimeUnit.MILLISECONDS)
+                : null;
+        Log.info("ObjectPool", "ObjectPool inicializado com %d instâncias (maxSize=%d, %s).",
+                idleCount.get(), maxSize, permits != null ? "limitado" : "elástico");
     }
 
     /**
-     * Pega emprestado um objeto do pool.
-     * Se o pool estiver vazio, cria um novo objeto. Não bloqueia.
+     * Pega emprestado um objeto do pool. No modo elástico, com o pool vazio cria um novo objeto;
+     * no modo limitado espera por uma vaga se as maxSize instâncias estiverem emprestadas.
      *
      * @return Uma instância de T.
+     * @throws PoolExhaustedException se a espera do modo limitado expirar
      * @throws RuntimeException Se a fábrica falhar ao criar um novo objeto.
      */
     public T borrowObject() {
-        T object = pool.poll(); // Tenta pegar um objeto existente
+        if (permits != null) {
+            acquirePermit();
+        }
+        borrows.increment();
+        try {
+            for (int spins = 0; ; spins++) {
+                Idle<T> entry;
+                while ((entry = pollIdle()) != null) {
+                    idleCount.decrementAndGet();
+                    if (isValid(entry.object())) {
+                        return entry.object();
+                    }
+                    destroy(); // inválido: tenta o seguinte
+                }
+                if (reserveNew()) break;
+
+                // modo limitado com maxSize objetos: com a nossa licença, um deles não está emprestado
+                // e só está de passagem (a ser destruído, validado ou criado pelo sweeper); espera por ele
+                if (spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
 
-        if (object == null) {
             // Pool vazio, cria um novo objeto
+            misses.increment();
             Log.info("ObjectPool", "Pool vazio, criando novo objeto...");
-            object = createObject();
-        } else {
-            Log.info("ObjectPool", "Objeto pego do pool. Tamanho restante: %d", pool.size());
+            try {
+                return createObject();
+            } catch (RuntimeException e) {
+                totalCount.decrementAndGet();
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            if (permits != null) permits.release();
+            throw e;
+        }
+    }
+
+    // conta o objeto que vai ser criado; no modo limitado, só se não passar de maxSize
+    private boolean reserveNew() {
+        if (permits == null) {
+            totalCount.incrementAndGet();
+            return true;
+        }
+        int total;
+        while ((total = totalCount.get()) < maxSize) {
+            if (totalCount.compareAndSet(total, total + 1)) return true;
+        }
+        return false;
+    }
+
+    private void acquirePermit() {
+        boolean acquired;
+        try {
+            acquired = borrowTimeoutMs == 0
+                    ? permits.tryAcquire()
+                    : permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            timeouts.increment();
+            throw new PoolExhaustedException("Todas as " + maxSize + " instâncias do pool estão em uso.");
         }
-        return object;
     }
 
     /**
      * Devolve um objeto ao pool para reutilização.
-     * Se o pool estiver cheio, o objeto é descartado.
+     * Se o pool estiver cheio ou fechado, ou o reset falhar, o objeto é descartado.
      *
      * @param object O objeto a ser devolvido.
      */
@@ -69,20 +208,175 @@ public class ObjectPool<T> {
             return;
         }
 
-        if (pool.size() < maxSize) {
-            boolean added = pool.offer(object);
-                if (added) {
-                Log.info("ObjectPool", "Objeto devolvido ao pool. Tamanho atual: %d", pool.size());
+        try {
+            boolean kept = false;
+            if (!closed && resetQuietly(object)) {
+                if (idleCount.incrementAndGet() <= maxSize) {
+                    Idle<T> entry = new Idle<>(object, System.nanoTime());
+                    if (!offerLocal(entry)) {
+                        idle.offerFirst(entry);
+                    }
+                    kept = true;
+                    if (Log.isInfoEnabled()) {
+                        Log.info("ObjectPool", "Objeto devolvido ao pool. Tamanho atual: %d", idleCount.get());
+                    }
+                } else {
+                    idleCount.decrementAndGet();
+                    if (Log.isInfoEnabled()) {
+                        Log.info("ObjectPool", "Pool cheio (maxSize=%d). Descartando objeto (Instance: %d)", maxSize, object.hashCode());
+                    }
+                }
+            }
+            if (!kept) {
+                destroy();
+            }
+        } finally {
+            // só depois de o objeto estar na pilha, para que quem recebe a vaga o encontre lá
+            if (permits != null) permits.release();
+        }
+    }
+
+    // a faixa da thread atual, pelo id misturado (ids seguidos caem em faixas diferentes)
+    private static int stripeBase() {
+        long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return ((int) (id >>> 32) & (STRIPES - 1)) * STRIPE_STRIDE;
+    }
+
+    // faixa da thread, depois a pilha partilhada, depois as faixas das outras threads
+    private Idle<T> pollIdle() {
+        int base = stripeBase();
+        Idle<T> entry = pollStripe(base);
+        if (entry != null) return entry;
+        entry = idle.pollFirst();
+        if (entry != null) return entry;
+        for (int other = (base + STRIPE_STRIDE) % stripes.length(); other != base; other = (other + STRIPE_STRIDE) % stripes.length()) {
+            entry = pollStripe(other);
+            if (entry != null) {
+                steals.increment();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private Idle<T> pollStripe(int base) {
+        for (int i = base + STRIPE_SLOTS - 1; i >= base; i--) {
+            Idle<T> entry = stripes.get(i);
+            if (entry != null && stripes.compareAndSet(i, entry, null)) return entry;
+        }
+        return null;
+    }
+
+    private boolean offerLocal(Idle<T> entry) {
+        int base = stripeBase();
+        for (int i = base; i < base + STRIPE_SLOTS; i++) {
+            if (stripes.get(i) == null && stripes.compareAndSet(i, null, entry)) return true;
+        }
+        return false;
+    }
+
+    // remove os objetos parados há demasiado tempo (os mais antigos estão no fim da pilha;
+    // as faixas são poucas posições e percorrem-se todas)
+    private void sweep() {
+        try {
+            long now = System.nanoTime();
+            for (int i = 0; i < stripes.length() && idleCount.get() > minIdle; i++) {
+                Idle<T> entry = stripes.get(i);
+                if (entry != null && now - entry.returnedAtNanos() >= idleTimeoutNanos && stripes.compareAndSet(i, entry, null)) {
+                    idleCount.decrementAndGet();
+                    evictions.increment();
+                    destroy();
+                }
+            }
+            // o mais antigo só sai da pilha se for para destruir: tirá-lo e voltar a pô-lo deixava um
+            // borrow concorrente sem o encontrar, e a criar outro
+            Idle<T> oldest;
+            while (idleCount.get() > minIdle && (oldest = idle.peekLast()) != null) {
+                if (now - oldest.returnedAtNanos() < idleTimeoutNanos) {
+                    break; // o mais antigo ainda é recente: os outros também
+                }
+                if (!idle.removeLastOccurrence(oldest)) {
+                    continue; // emprestado entretanto
+                }
+                idleCount.decrementAndGet();
+                evictions.increment();
+                destroy();
+            }
+            fill();
+        } catch (RuntimeException e) {
+            Log.error("ObjectPool", "Erro no sweeper do pool: " + e.getMessage(), e);
+        }
+    }
+
+    // cria instâncias até haver minIdle livres, sem passar de maxSize em existência
+    private void fill() {
+        while (!closed && idleCount.get() < minIdle) {
+            int total = totalCount.get();
+            if (total >= maxSize) return;
+            if (!totalCount.compareAndSet(total, total + 1)) continue;
+            T object;
+            try {
+                object = createObject();
+            } catch (RuntimeException e) {
+                totalCount.decrementAndGet();
+                throw e;
             }
-        } else {
-            Log.info("ObjectPool", "Pool cheio (maxSize=%d). Descartando objeto (Instance: %d)", maxSize, object.hashCode());
+            idleCount.incrementAndGet();
+            idle.offerLast(new Idle<>(object, System.nanoTime()));
+        }
+    }
+
+    private boolean isValid(T object) {
+        try {
+            return validator == null || validator.test(object);
+        } catch (RuntimeException e) {
+            Log.warn("ObjectPool", "Validação de objeto falhou: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean resetQuietly(T object) {
+        try {
+            if (reset != null) reset.accept(object);
+            return true;
+        } catch (RuntimeException e) {
+            Log.warn("ObjectPool", "Reset de objeto falhou; objeto descartado: " + e.getMessage());
+            return false;
         }
     }
 
+    // o objeto é simplesmente largado para o GC; só a contagem muda
+    private void destroy() {
+        totalCount.decrementAndGet();
+    }
+
+    public long getBorrowCount() { return borrows.sum(); }
+    public long getMissCount() { return misses.sum(); }
+    public long getTimeoutCount() { return timeouts.sum(); }
+    public long getEvictionCount() { return evictions.sum(); }
+    public long getStealCount() { return steals.sum(); }
+    public int getMaxSize() { return maxSize; }
+    public int getIdleCount() { return idleCount.get(); }
+    public int getTotalCount() { return totalCount.get(); }
+    public int getActiveCount() { return Math.max(0, totalCount.get() - idleCount.get()); }
+    public boolean isBounded() { return permits != null; }
 
     public void close() {
-    Log.info("ObjectPool", "Fechando ObjectPool. Limpando %d objetos.", pool.size());
-    pool.clear();
+        Log.info("ObjectPool", "Fechando ObjectPool. Limpando %d objetos.", idleCount.get());
+        closed = true;
+        if (sweeper != null) {
+            sweeper.cancel(false);
+        }
+        for (int i = 0; i < stripes.length(); i++) {
+            if (stripes.getAndSet(i, null) != null) {
+                idleCount.decrementAndGet();
+                destroy();
+            }
+        }
+        while (idle.pollFirst() != null) {
+            idleCount.decrementAndGet();
+            destroy();
+        }
     }
 
     private T createObject() {
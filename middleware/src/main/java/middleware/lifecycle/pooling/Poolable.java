@@ -0,0 +1,17 @@
+package middleware.lifecycle.pooling;
+
+/**
+ * Ganchos opcionais de um componente @Pooled.
+ */
+public interface Poolable {
+
+    // chamado antes de emprestar uma instância livre; false descarta-a e o pool tenta outra
+    default boolean validate() {
+        return true;
+    }
+
+    // chamado quando a instância é devolvida, para limpar o estado do pedido anterior;
+    // se lançar uma exceção a instância é descartada
+    default void reset() {
+    }
+}
@@ -0,0 +1,145 @@
+package middleware.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import middleware.lifecycle.pooling.ObjectPool;
+
+/**
+ * Registo central das métricas do middleware, exposto em formato Prometheus (ver {@link #scrape()}).
+ *
+ * As rotas são registadas pelo ComponentScanner; pedidos para caminhos desconhecidos contam todos
+ * numa única entrada ("unmatched"), para que caminhos arbitrários não façam crescer o registo.
+ * Gauges e contadores de outros componentes (transportes, pools) são lidos só na altura do scrape.
+ */
+public class MetricsRegistry {
+
+    // limites (em segundos) dos buckets expostos; os buckets internos do histograma são mais finos
+    private static final double[] EXPOSED_BUCKETS_SECONDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+    private static final double[] EXPOSED_QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final RouteMetrics unmatched = new RouteMetrics("*", "unmatched");
+    private final Map<String, ObjectPool<?>> pools = new ConcurrentSkipListMap<>();
+    private final Map<String, Sample> samples = new ConcurrentSkipListMap<>();
+
+    private record Sample(String type, String help, LongSupplier value) {}
+
+    public RouteMetrics registerRoute(String httpMethod, String path) {
+        return routes.computeIfAbsent(httpMethod + ":" + path, key -> new RouteMetrics(httpMethod, path));
+    }
+
+    // métricas da rota, ou a entrada partilhada dos pedidos sem rota registada
+    public RouteMetrics route(String httpMethod, String path) {
+        return route(httpMethod + ":" + path);
+    }
+
+    /**
+     * @param routeKey a chave da rota já resolvida (ex.: "GET:/messagestore/groups/{groupId}/messages"), ou null
+     */
+    public RouteMetrics route(String routeKey) {
+        RouteMetrics route = routeKey != null ? routes.get(routeKey) : null;
+        return route != null ? route : unmatched;
+    }
+
+    public void registerPool(String name, ObjectPool<?> pool) {
+        pools.put(name, pool);
+    }
+
+    public void registerGauge(String name, String help, LongSupplier value) {
+        samples.put(name, new Sample("gauge", help, value));
+    }
+
+    public void registerCounter(String name, String help, LongSupplier value) {
+        samples.put(name, new Sample("counter", help, value));
+    }
+
+    /**
+     * Todas as métricas no formato de texto do Prometheus.
+     */
+    public String scrape() {
+        PrometheusWriter writer = new PrometheusWriter();
+        RouteMetrics[] all = routes.values().toArray(new RouteMetrics[0]);
+        RouteMetrics[] withUnmatched = Arrays.copyOf(all, all.length + 1);
+        withUnmatched[all.length] = unmatched;
+
+        writer.family("middleware_requests_in_flight", "gauge", "Pedidos em execução por rota.");
+        for (RouteMetrics route : withUnmatched) {
+            writer.sample("middleware_requests_in_flight", route.getInFlight(),
+                    "method", route.getHttpMethod(), "path", route.getPath());
+        }
+
+        writer.family("middleware_responses_total", "counter", "Respostas por rota e código HTTP.");
+        for (RouteMetrics route : withUnmatched) {
+            for (Map.Entry<Integer, LongAdder> entry : route.getResponsesByStatus().entrySet()) {
+                writer.sample("middleware_responses_total", entry.getValue().sum(),
+                        "method", route.getHttpMethod(), "path", route.getPath(), "status", String.valueOf(entry.getKey()));
+            }
+        }
+
+        // um único snapshot por rota, para que buckets, contagem e quantis sejam coerentes entre si
+        long[][] snapshots = new long[withUnmatched.length][];
+        for (int i = 0; i < withUnmatched.length; i++) {
+            snapshots[i] = withUnmatched[i].getLatency().snapshot();
+        }
+
+        writer.family("middleware_request_duration_seconds", "histogram", "Latência dos pedidos por rota.");
+        for (int i = 0; i < withUnmatched.length; i++) {
+            RouteMetrics route = withUnmatched[i];
+            long[] snapshot = snapshots[i];
+            for (double le : EXPOSED_BUCKETS_SECONDS) {
+                writer.sample("middleware_request_duration_seconds_bucket",
+                        LatencyHistogram.countAtOrBelow(snapshot, (long) (le * 1_000_000)),
+                        "method", route.getHttpMethod(), "path", route.getPath(), "le", String.valueOf(le));
+            }
+            long total = LatencyHistogram.total(snapshot);
+            writer.sample("middleware_request_duration_seconds_bucket", total,
+                    "method", route.getHttpMethod(), "path", route.getPath(), "le", "+Inf");
+            writer.sample("middleware_request_duration_seconds_sum", route.getLatency().getSumMicros() / 1_000_000.0,
+                    "method", route.getHttpMethod(), "path", route.getPath());
+            writer.sample("middleware_request_duration_seconds_count", total,
+                    "method", route.getHttpMethod(), "path", route.getPath());
+        }
+
+        writer.family("middleware_request_duration_quantile_seconds", "gauge", "Quantis da latência por rota (resolução de 12,5%).");
+        for (int i = 0; i < withUnmatched.length; i++) {
+            RouteMetrics route = withUnmatched[i];
+            for (double quantile : EXPOSED_QUANTILES) {
+                writer.sample("middleware_request_duration_quantile_seconds",
+                        LatencyHistogram.valueAtQuantile(snapshots[i], quantile) / 1_000_000.0,
+                        "method", route.getHttpMethod(), "path", route.getPath(), "quantile", String.valueOf(quantile));
+            }
+        }
+
+        if (!pools.isEmpty()) {
+            writer.family("middleware_pool_borrows_total", "counter", "Objetos pedidos ao pool.");
+            pools.forEach((name, pool) -> writer.sample("middleware_pool_borrows_total", pool.getBorrowCount(), "pool", name));
+            writer.family("middleware_pool_misses_total", "counter", "Pedidos ao pool que obrigaram a criar um objeto novo.");
+            pools.forEach((name, pool) -> writer.sample("middleware_pool_misses_total", pool.getMissCount(), "pool", name));
+            writer.family("middleware_pool_idle", "gauge", "Objetos livres no pool.");
+            pools.forEach((name, pool) -> writer.sample("middleware_pool_idle", pool.getIdleCount(), "pool", name));
+            writer.family("middleware_pool_size", "gauge", "Objetos do pool em existência, livres ou emprestados.");
+            pools.forEach((name, pool) -> writer.sample("middleware_pool_size", pool.getTotalCount(), "pool", name));
+            writer.family("middleware_pool_active", "gauge", "Objetos do pool emprestados.");
+            pools.forEach((name, pool) -> writer.sample("middleware_pool_active", pool.getActiveCount(), "pool", name));
+            writer.family("middleware_pool_timeouts_total", "counter", "Pedidos ao pool que desistiram de esperar por um objeto livre.");
+            pools.forEach((name, pool) -> writer.sample("middleware_pool_timeouts_total", pool.getTimeoutCount(), "pool", name));
+            writer.family("middleware_pool_evictions_total", "counter", "Objetos destruídos por estarem parados há demasiado tempo.");
+            pools.forEach((name, pool) -> writer.sample("middleware_pool_evictions_total", pool.getEvictionCount(), "pool", name));
+            writer.family("middleware_pool_steals_total", "counter", "Objetos emprestados a partir da faixa de outra thread.");
+            pools.forEach((name, pool) -> writer.sample("middleware_pool_steals_total", pool.getStealCount(), "pool", name));
+        }
+
+        samples.forEach((name, sample) -> {
+            writer.family(name, sample.type(), sample.help());
+            writer.sample(name, sample.value().getAsLong());
+        });
+
+        return writer.toString();
+    }
+}
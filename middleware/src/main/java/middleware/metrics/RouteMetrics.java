@@ -0,0 +1,42 @@
+package middleware.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de uma rota: pedidos em curso, respostas por código HTTP e histograma de latência.
+ */
+public class RouteMetrics {
+
+    private final String httpMethod;
+    private final String path;
+    private final LongAdder inFlight = new LongAdder();
+    private final Map<Integer, LongAdder> responsesByStatus = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public RouteMetrics(String httpMethod, String path) {
+        this.httpMethod = httpMethod;
+        this.path = path;
+    }
+
+    public void requestStarted() {
+        inFlight.increment();
+    }
+
+    public void requestCompleted(int statusCode, long latencyNanos) {
+        inFlight.decrement();
+        LongAdder counter = responsesByStatus.get(statusCode);
+        if (counter == null) {
+            counter = responsesByStatus.computeIfAbsent(statusCode, code -> new LongAdder());
+        }
+        counter.increment();
+        latency.record(latencyNanos);
+    }
+
+    public String getHttpMethod() { return httpMethod; }
+    public String getPath() { return path; }
+    public long getInFlight() { return inFlight.sum(); }
+    public Map<Integer, LongAdder> getResponsesByStatus() { return responsesByStatus; }
+    public LatencyHistogram getLatency() { return latency; }
+}
@@ -0,0 +1,27 @@
+package middleware.streaming;
+
+/**
+ * Destino de eventos de um subscritor de uma rota @EventStream.
+ * Os envios nunca bloqueiam: o evento vai para uma fila limitada e é escrito pelo transporte.
+ */
+public interface EventSink {
+
+    /**
+     * Coloca o evento na fila do subscritor.
+     *
+     * @return false se o stream está fechado ou o evento foi descartado por a fila estar cheia
+     */
+    boolean send(StreamEvent event);
+
+    default boolean send(Object data) {
+        return send(StreamEvent.of(data));
+    }
+
+    boolean isOpen();
+
+    // fecha o stream; os eventos ainda na fila são descartados
+    void close();
+
+    // chamado uma única vez quando o stream fecha, seja qual for o motivo (ou logo, se já está fechado)
+    void onClose(Runnable listener);
+}
@@ -0,0 +1,60 @@
+package middleware.streaming;
+
+import java.lang.reflect.Method;
+
+import middleware.component_model.annotations.EventStream;
+import middleware.component_model.remoting.Marshaller;
+
+/**
+ * Configuração de uma rota @EventStream, resolvida no registo: em que parâmetro entra o
+ * EventSink e como é a fila de cada subscritor.
+ */
+public class EventStreamBinding {
+
+    private final int sinkIndex;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long heartbeatMs;
+
+    public EventStreamBinding(int sinkIndex, int queueCapacity, OverflowPolicy overflowPolicy, long heartbeatMs) {
+        this.sinkIndex = sinkIndex;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.heartbeatMs = heartbeatMs;
+    }
+
+    /**
+     * @return a configuração do stream, ou null se o método não tem @EventStream
+     * @throws IllegalArgumentException se o método não tem um parâmetro EventSink ou a configuração é inválida
+     */
+    public static EventStreamBinding of(Method method) {
+        EventStream annotation = method.getAnnotation(EventStream.class);
+        if (annotation == null) return null;
+
+        int sinkIndex = -1;
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == EventSink.class) {
+                sinkIndex = i;
+                break;
+            }
+        }
+        if (sinkIndex < 0) {
+            throw new IllegalArgumentException("O método @EventStream " + method.getName() + " precisa de um parâmetro EventSink.");
+        }
+        if (annotation.queueCapacity() <= 0 || annotation.heartbeatMs() <= 0) {
+            throw new IllegalArgumentException("queueCapacity e heartbeatMs de " + method.getName() + " devem ser positivos.");
+        }
+        return new EventStreamBinding(sinkIndex, annotation.queueCapacity(), annotation.overflow(), annotation.heartbeatMs());
+    }
+
+    // um sink novo para um subscritor
+    public QueuedEventSink newSink(Marshaller marshaller) {
+        return new QueuedEventSink(queueCapacity, overflowPolicy, heartbeatMs, marshaller);
+    }
+
+    public int getSinkIndex() { return sinkIndex; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+    public long getHeartbeatMs() { return heartbeatMs; }
+}
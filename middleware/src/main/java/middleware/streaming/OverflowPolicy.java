@@ -0,0 +1,12 @@
+package middleware.streaming;
+
+/**
+ * O que acontece a um evento quando a fila de um subscritor lento está cheia.
+ * Em nenhum caso quem publica fica bloqueado.
+ */
+public enum OverflowPolicy {
+    // descarta o evento novo só para este subscritor
+    DROP,
+    // fecha o stream deste subscritor (o cliente pode voltar a ligar e recuperar pelo cursor)
+    DISCONNECT
+}
@@ -0,0 +1,157 @@
+package middleware.streaming;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import middleware.component_model.remoting.Marshaller;
+import middleware.util.Log;
+
+/**
+ * EventSink com uma fila limitada de frames já serializados, esvaziada pelo transporte.
+ *
+ * Quem publica só faz um offer na fila; com a fila cheia aplica-se a {@link OverflowPolicy} da rota,
+ * por isso um subscritor lento nunca atrasa quem publica nem os outros subscritores.
+ * O transporte bloqueante lê com {@link #take(long)}; o NIO regista um {@link #setWakeup wakeup}
+ * e lê com {@link #poll()} na thread do event loop.
+ */
+public class QueuedEventSink implements EventSink {
+
+    // marca de fim de stream na fila
+    private static final byte[] CLOSED = new byte[0];
+    // comentário SSE: mantém a conexão viva e deteta clientes que já saíram
+    public static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ArrayBlockingQueue<byte[]> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final Marshaller marshaller;
+    private final long heartbeatMs;
+
+    private final AtomicBoolean open = new AtomicBoolean(true);
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile Runnable wakeup;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    public QueuedEventSink(int queueCapacity, OverflowPolicy overflowPolicy, long heartbeatMs, Marshaller marshaller) {
+        // +1 para a marca de fim caber sempre
+        this.queue = new ArrayBlockingQueue<>(queueCapacity + 1);
+        this.overflowPolicy = overflowPolicy;
+        this.heartbeatMs = heartbeatMs;
+        this.marshaller = marshaller;
+    }
+
+    @Override
+    public boolean send(StreamEvent event) {
+        if (!open.get()) return false;
+
+        byte[] frame;
+        try {
+            frame = event.frame(marshaller);
+        } catch (Exception e) {
+            Log.error("QueuedEventSink", "Falha ao serializar evento: " + e.getMessage(), e);
+            return false;
+        }
+
+        // deixa sempre um lugar livre para a marca de fim
+        if (queue.remainingCapacity() > 1 && queue.offer(frame)) {
+            signal();
+            return true;
+        }
+
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            dropped.increment();
+        } else {
+            Log.warn("QueuedEventSink", "Subscritor lento (fila cheia). Fechando o stream.");
+            queue.clear(); // o cliente vai perder estes eventos de qualquer forma
+            close();
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    @Override
+    public void close() {
+        if (!open.compareAndSet(true, false)) return;
+
+        // os eventos já na fila ainda são entregues; só com escritores em corrida falta lugar para a marca
+        while (!queue.offer(CLOSED)) {
+            queue.poll();
+        }
+        signal();
+        for (Runnable listener : closeListeners) {
+            runQuietly(listener);
+        }
+    }
+
+    @Override
+    public void onClose(Runnable listener) {
+        closeListeners.add(listener);
+        // fechou entre o teste e o registo: o close() pode já ter percorrido a lista
+        if (!open.get() && closeListeners.remove(listener)) {
+            runQuietly(listener);
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getHeartbeatMs() {
+        return heartbeatMs;
+    }
+
+    // --- uso do transporte ---
+
+    /**
+     * Próximo frame, esperando no máximo {@code timeoutMs}.
+     *
+     * @return o frame, {@link #HEARTBEAT} se o tempo acabou sem eventos, ou null se o stream fechou
+     */
+    public byte[] take(long timeoutMs) throws InterruptedException {
+        byte[] frame = queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (frame == null) return HEARTBEAT;
+        return frame == CLOSED ? null : frame;
+    }
+
+    /**
+     * Próximo frame sem esperar: null se não há nenhum; {@link #isOpen()} distingue o fim do stream.
+     */
+    public byte[] poll() {
+        wakeupPending.set(false);
+        byte[] frame = queue.poll();
+        return frame == CLOSED ? null : frame;
+    }
+
+    /**
+     * Ação a correr (uma vez por rajada de eventos) quando há frames novos ou o stream fecha.
+     */
+    public void setWakeup(Runnable wakeup) {
+        this.wakeup = wakeup;
+        signal(); // pode já haver eventos enviados pelo próprio método do stream
+    }
+
+    private void signal() {
+        Runnable action = wakeup;
+        if (action != null && wakeupPending.compareAndSet(false, true)) {
+            action.run();
+        }
+    }
+
+    private static void runQuietly(Runnable listener) {
+        try {
+            listener.run();
+        } catch (RuntimeException e) {
+            Log.error("QueuedEventSink", "Erro num listener de fecho: " + e.getMessage(), e);
+        }
+    }
+}
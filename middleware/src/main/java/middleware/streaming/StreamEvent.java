@@ -0,0 +1,64 @@
+package middleware.streaming;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import middleware.component_model.remoting.Marshaller;
+
+/**
+ * Um evento de Server-Sent Events. O frame é serializado uma única vez, no primeiro envio,
+ * e os mesmos bytes são partilhados por todos os subscritores a quem o evento é enviado.
+ */
+public final class StreamEvent {
+
+    private final String name;  // campo "event:", ou null
+    private final String id;    // campo "id:", ou null
+    private final Object data;
+    private volatile byte[] frame;
+
+    private StreamEvent(String name, String id, Object data) {
+        this.name = name;
+        this.id = id;
+        this.data = data;
+    }
+
+    public static StreamEvent of(Object data) {
+        return new StreamEvent(null, null, data);
+    }
+
+    public static StreamEvent of(String name, String id, Object data) {
+        return new StreamEvent(name, id, data);
+    }
+
+    public String getName() { return name; }
+    public String getId() { return id; }
+    public Object getData() { return data; }
+
+    /**
+     * Frame SSE do evento, com os dados serializados pelo Marshaller.
+     * Duas threads podem serializar ao mesmo tempo no primeiro envio; o resultado é igual.
+     */
+    public byte[] frame(Marshaller marshaller) throws Exception {
+        byte[] encoded = frame;
+        if (encoded == null) {
+            encoded = encode(marshaller);
+            frame = encoded;
+        }
+        return encoded;
+    }
+
+    private byte[] encode(Marshaller marshaller) throws Exception {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+        marshaller.marshalValue(data, payload);
+
+        StringBuilder text = new StringBuilder(payload.size() + 32);
+        if (id != null) text.append("id: ").append(id).append('\n');
+        if (name != null) text.append("event: ").append(name).append('\n');
+        // cada linha dos dados tem de ir no seu próprio campo "data:"
+        for (String line : payload.toString(StandardCharsets.UTF_8).split("\n", -1)) {
+            text.append("data: ").append(line).append('\n');
+        }
+        text.append('\n');
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
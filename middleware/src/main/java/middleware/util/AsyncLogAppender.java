@@ -0,0 +1,216 @@
+package middleware.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Buffer circular lock-free (vários produtores, um consumidor) entre quem regista mensagens e a
+ * thread que as escreve. Os slots são pré-alocados e reutilizados: um produtor reserva uma posição
+ * com CAS, preenche o slot e publica-o avançando o número de sequência do slot. A formatação da
+ * mensagem só acontece na thread escritora; os argumentos que podem mudar entretanto são
+ * convertidos para texto antes de entrarem no buffer.
+ */
+final class AsyncLogAppender {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final class Slot {
+        // == posição: livre para essa posição; == posição + 1: publicado e pronto a escrever
+        volatile long sequence;
+        Log.Level level;
+        String origin;
+        String message;
+        Object[] args;
+        Throwable throwable;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final Log.OverflowPolicy overflowPolicy;
+
+    private final AtomicLong tail = new AtomicLong(); // próxima posição a reservar (produtores)
+    private long head;                                // próxima posição a escrever (só o consumidor)
+
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean sleeping;
+
+    AsyncLogAppender(int capacity, Log.OverflowPolicy overflowPolicy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1; // potência de 2
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+        this.mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+
+        this.writer = new Thread(this::drainLoop, "log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Coloca a mensagem no buffer. Com o buffer cheio, descarta-a (DROP) ou espera por espaço (BLOCK);
+     * avisos e erros esperam sempre, mesmo com DROP.
+     */
+    void append(Log.Level level, String origin, String message, Object[] args, Throwable throwable) {
+        if (!running) {
+            // a thread escritora já parou (ou está a parar): o que entrasse no buffer não seria escrito
+            Log.print(level, origin, message, args, throwable);
+            return;
+        }
+        args = snapshot(args);
+        boolean droppable = overflowPolicy == Log.OverflowPolicy.DROP && level.ordinal() < Log.Level.WARN.ordinal();
+
+        long position;
+        Slot slot;
+        while (true) {
+            position = tail.get();
+            slot = slots[(int) (position & mask)];
+            long sequence = slot.sequence;
+
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (sequence < position) {
+                // cheio: o consumidor ainda não libertou este slot
+                if (!running) {
+                    Log.print(level, origin, message, args, throwable);
+                    return;
+                }
+                if (droppable) {
+                    dropped.increment();
+                    return;
+                }
+                wakeWriter();
+                LockSupport.parkNanos(1_000);
+            }
+            // sequence > position: outro produtor reservou esta posição primeiro; tenta de novo
+        }
+
+        slot.level = level;
+        slot.origin = origin;
+        slot.message = message;
+        slot.args = args;
+        slot.throwable = throwable;
+        slot.sequence = position + 1; // publica
+
+        if (sleeping) wakeWriter();
+    }
+
+    /**
+     * Os argumentos são formatados mais tarde, noutra thread: os que não são imutáveis passam já a
+     * texto, para o log mostrar o valor do momento em que foi registado.
+     */
+    private static Object[] snapshot(Object[] args) {
+        if (args == null) return null;
+        Object[] copy = null;
+        for (int i = 0; i < args.length; i++) {
+            if (isImmutable(args[i])) continue;
+            if (copy == null) copy = args.clone();
+            copy[i] = String.valueOf(args[i]);
+        }
+        return copy != null ? copy : args;
+    }
+
+    private static boolean isImmutable(Object arg) {
+        return arg == null || arg instanceof String || arg instanceof Integer || arg instanceof Long
+                || arg instanceof Double || arg instanceof Float || arg instanceof Short || arg instanceof Byte
+                || arg instanceof Boolean || arg instanceof Character || arg instanceof Enum<?>
+                || arg instanceof BigInteger || arg instanceof BigDecimal;
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Escreve tudo o que ainda está no buffer e pára a thread escritora.
+     */
+    void shutdown() {
+        running = false;
+        wakeWriter();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!writer.isAlive()) {
+            drainAvailable(); // de quem viu running antes de ele mudar e publicou depois da última leitura
+            Log.flush();
+        }
+    }
+
+    private void wakeWriter() {
+        LockSupport.unpark(writer);
+    }
+
+    private void drainLoop() {
+        while (true) {
+            boolean wrote = drainAvailable();
+            if (wrote) {
+                Log.flush();
+                continue;
+            }
+
+            reportDropped();
+            if (!running) {
+                drainAvailable(); // o que chegou entre a última leitura e o fim
+                Log.flush();
+                return;
+            }
+
+            // sem trabalho: dorme até um produtor acordar a thread (ou até ao timeout)
+            sleeping = true;
+            if (slots[(int) (head & mask)].sequence != head + 1) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    private boolean drainAvailable() {
+        boolean wrote = false;
+        while (true) {
+            Slot slot = slots[(int) (head & mask)];
+            if (slot.sequence != head + 1) return wrote;
+
+            Log.Level level = slot.level;
+            String origin = slot.origin;
+            String message = slot.message;
+            Object[] args = slot.args;
+            Throwable throwable = slot.throwable;
+
+            slot.origin = null;
+            slot.message = null;
+            slot.args = null;
+            slot.throwable = null;
+            slot.sequence = head + slots.length; // liberta para a volta seguinte
+            head++;
+
+            try {
+                Log.print(level, origin, message, args, throwable);
+            } catch (RuntimeException e) {
+                // ex.: formato e argumentos que não batem certo; a thread escritora não pode morrer
+                System.err.println("[Log] Mensagem de " + origin + " não escrita ('" + message + "'): " + e);
+            }
+            wrote = true;
+        }
+    }
+
+    private long reportedDropped;
+
+    private void reportDropped() {
+        long total = dropped.sum();
+        if (total > reportedDropped) {
+            Log.print(Log.Level.WARN, "Log", "%d mensagens de log descartadas (buffer cheio).", new Object[] { total - reportedDropped }, null);
+            reportedDropped = total;
+        }
+    }
+}
@@ -1,30 +1,114 @@
 package middleware.util;
 
+import java.io.PrintStream;
+
+/**
+ * Log do middleware.
+ *
+ * As mensagens são entregues a uma thread escritora através de um buffer circular
+ * ({@link AsyncLogAppender}), por isso quem regista não fica à espera do System.out.
+ * Mensagens com argumentos só são formatadas na thread escritora (argumentos mutáveis passam a
+ * texto logo no registo), e nada é feito quando o nível está desligado; em caminhos quentes vale
+ * a pena testar {@link #isInfoEnabled()} antes de calcular os argumentos.
+ *
+ * Configuração por propriedades de sistema:
+ * middleware.log.level (DEBUG, INFO, WARN, ERROR, OFF; padrão INFO),
+ * middleware.log.async (padrão true), middleware.log.bufferSize (padrão 8192) e
+ * middleware.log.overflow (DROP ou BLOCK; padrão DROP; WARN e ERROR nunca são descartados).
+ */
 public final class Log {
 
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    // o que fazer quando o buffer do log assíncrono está cheio (só DEBUG e INFO podem ser descartados)
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private static volatile Level level = Level.valueOf(System.getProperty("middleware.log.level", "INFO").toUpperCase());
+
+    private static final AsyncLogAppender APPENDER = Boolean.parseBoolean(System.getProperty("middleware.log.async", "true"))
+            ? new AsyncLogAppender(Integer.getInteger("middleware.log.bufferSize", 8192),
+                                   OverflowPolicy.valueOf(System.getProperty("middleware.log.overflow", "DROP").toUpperCase()))
+            : null;
+
+    static {
+        if (APPENDER != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(APPENDER::shutdown, "log-shutdown"));
+        }
+    }
+
     private Log() {}
 
+    public static void setLevel(Level newLevel) {
+        if (newLevel != null) level = newLevel;
+    }
+
+    public static Level getLevel() { return level; }
+
+    public static boolean isDebugEnabled() { return level.ordinal() <= Level.DEBUG.ordinal(); }
+    public static boolean isInfoEnabled() { return level.ordinal() <= Level.INFO.ordinal(); }
+    public static boolean isWarnEnabled() { return level.ordinal() <= Level.WARN.ordinal(); }
+    public static boolean isErrorEnabled() { return level.ordinal() <= Level.ERROR.ordinal(); }
+
+    // mensagens DEBUG/INFO descartadas por o buffer estar cheio (política DROP)
+    public static long getDroppedCount() {
+        return APPENDER != null ? APPENDER.getDropped() : 0;
+    }
+
+    public static void debug(String origin, String message, Object... args) {
+        if (isDebugEnabled()) write(Level.DEBUG, origin, message, args, null);
+    }
+
     public static void info(String origin, String message) {
-        System.out.println("[" + origin + "] " + message);
+        if (isInfoEnabled()) write(Level.INFO, origin, message, null, null);
     }
 
     public static void info(String origin, String message, Object... args) {
-        System.out.println("[" + origin + "] " + String.format(message, args));
+        if (isInfoEnabled()) write(Level.INFO, origin, message, args, null);
     }
 
     public static void error(String origin, String message) {
-        System.err.println("[" + origin + "] " + message);
+        if (isErrorEnabled()) write(Level.ERROR, origin, message, null, null);
     }
 
     public static void error(String origin, String message, Throwable t) {
-        System.err.println("[" + origin + "] " + message);
-        if (t != null) {
-            t.printStackTrace(System.err);
-        }
+        if (isErrorEnabled()) write(Level.ERROR, origin, message, null, t);
     }
 
     public static void warn(String origin, String message) {
-        System.out.println("[" + origin + "] WARNING: " + message);
+        if (isWarnEnabled()) write(Level.WARN, origin, message, null, null);
     }
 
+    public static void warn(String origin, String message, Object... args) {
+        if (isWarnEnabled()) write(Level.WARN, origin, message, args, null);
+    }
+
+    private static void write(Level messageLevel, String origin, String message, Object[] args, Throwable t) {
+        if (APPENDER != null) {
+            APPENDER.append(messageLevel, origin, message, args, t);
+        } else {
+            print(messageLevel, origin, message, args, t);
+        }
+    }
+
+    // Formata e escreve de facto; chamado pela thread escritora (ou diretamente no modo síncrono).
+    static void print(Level messageLevel, String origin, String message, Object[] args, Throwable t) {
+        String text = args == null ? message : String.format(message, args);
+
+        switch (messageLevel) {
+            case ERROR -> {
+                System.err.println("[" + origin + "] " + text);
+                if (t != null) {
+                    t.printStackTrace(System.err);
+                }
+            }
+            case WARN -> System.out.println("[" + origin + "] WARNING: " + text);
+            default -> System.out.println("[" + origin + "] " + text);
+        }
+    }
+
+    static void flush() {
+        PrintStream out = System.out;
+        out.flush();
+        System.err.flush();
+    }
 }
@@ -0,0 +1,59 @@
+package middleware.util;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Reporta, via JFR, virtual threads que ficaram presas à carrier thread (pinning)
+ * por mais tempo que o limite configurado, normalmente por bloquearem dentro de um bloco synchronized.
+ */
+public class PinningMonitor implements AutoCloseable {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_FRAMES = 5;
+
+    private final RecordingStream stream;
+    private final AtomicLong pinnedEvents = new AtomicLong();
+
+    public PinningMonitor(long thresholdMs) {
+        this.stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::report);
+    }
+
+    public void start() {
+        stream.startAsync();
+        Log.info("PinningMonitor", "Diagnóstico de pinning de virtual threads ativo.");
+    }
+
+    // quantos eventos de pinning foram observados desde o início
+    public long getPinnedEvents() {
+        return pinnedEvents.get();
+    }
+
+    private void report(RecordedEvent event) {
+        pinnedEvents.incrementAndGet();
+
+        StringBuilder frames = new StringBuilder();
+        if (event.getStackTrace() != null) {
+            List<RecordedFrame> stack = event.getStackTrace().getFrames();
+            for (int i = 0; i < Math.min(MAX_FRAMES, stack.size()); i++) {
+                RecordedFrame frame = stack.get(i);
+                frames.append("\n    at ").append(frame.getMethod().getType().getName())
+                      .append('.').append(frame.getMethod().getName())
+                      .append(" (linha ").append(frame.getLineNumber()).append(')');
+            }
+        }
+        Log.warn("PinningMonitor", "Virtual thread presa à carrier por " + event.getDuration().toMillis() + " ms" + frames);
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}